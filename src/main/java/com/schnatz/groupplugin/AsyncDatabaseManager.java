@@ -0,0 +1,382 @@
+package com.schnatz.groupplugin;
+
+import org.bukkit.Bukkit;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * This class offers every operation of the {@link DatabaseManager} as non-blocking {@link CompletableFuture}.
+ * The database work runs on a dedicated executor, results can be handed back to the server's main thread via {@link AsyncDatabaseManager#mainThread()}.
+ * @author Henry Schnatz
+ */
+public class AsyncDatabaseManager {
+    /**
+     * The time in seconds {@link AsyncDatabaseManager#close()} waits for running operations
+     */
+    private static final int SHUTDOWN_TIMEOUT = 5;
+    /**
+     * The database manager doing the actual work
+     */
+    private final DatabaseManager databaseManager;
+    /**
+     * The executor running the database operations
+     */
+    private final ExecutorService executor;
+    /**
+     * The executor running tasks on the server's main thread
+     */
+    private final Executor mainThreadExecutor;
+
+    /**
+     * Initialises the executor according to the given settings
+     * @param databaseManager the database manager doing the actual work
+     * @param threads the number of threads used for database operations (ignored if virtual threads are used)
+     * @param virtualThreads whether every operation should run on its own virtual thread (needs Java 21)
+     */
+    public AsyncDatabaseManager(DatabaseManager databaseManager, int threads, boolean virtualThreads) {
+        this.databaseManager = databaseManager;
+        this.executor = createExecutor(threads, virtualThreads);
+        this.mainThreadExecutor = task -> {
+            if(Bukkit.getServer() == null || Bukkit.isPrimaryThread())
+                task.run();
+            else
+                Bukkit.getScheduler().runTask(Main.getPlugin(), task);
+        };
+    }
+
+    /**
+     * Creates a new group with the given parameters on the executor (see {@link DatabaseManager#createGroup(String, String, int, int)})
+     * @param name the group's name
+     * @param prefix the group's prefix
+     * @param level the group's level
+     * @param colorCode the group's color code
+     * @return a future completed once the group is created, or exceptionally with an {@link IllegalArgumentException} if the given group name is empty/too long or already exists or the prefix is too long or the color code is not within the range of 0 to 15, or an {@link SQLException} if something goes wrong with the database connection
+     */
+    public CompletableFuture<Void> createGroup(String name, String prefix, int level, int colorCode) {
+        return run(() -> databaseManager.createGroup(name, prefix, level, colorCode));
+    }
+
+    /**
+     * Changes the given group's name to the given new name on the executor (see {@link DatabaseManager#editGroupName(String, String)})
+     * @param group the group's old name
+     * @param newName the group's new name
+     * @return a future completed once the group is renamed, or exceptionally with an {@link IllegalArgumentException} if the given group name is empty or does not exist or is too long or the given new name already exists, or an {@link SQLException} if something goes wrong with the database connection
+     */
+    public CompletableFuture<Void> editGroupName(String group, String newName) {
+        return run(() -> databaseManager.editGroupName(group, newName));
+    }
+
+    /**
+     * Changes the given group's prefix to the given new prefix on the executor (see {@link DatabaseManager#editGroupPrefix(String, String)})
+     * @param group the group's name
+     * @param prefix the group's new prefix
+     * @return a future completed once the prefix is changed, or exceptionally with an {@link IllegalArgumentException} if the given group name is empty or does not exist or the prefix is too long, or an {@link SQLException} if something goes wrong with the database connection
+     */
+    public CompletableFuture<Void> editGroupPrefix(String group, String prefix) {
+        return run(() -> databaseManager.editGroupPrefix(group, prefix));
+    }
+
+    /**
+     * Changes the given group's color code to the given new color code on the executor (see {@link DatabaseManager#editGroupColorCode(String, int)})
+     * @param group the group's name
+     * @param colorCode the group's new color code
+     * @return a future completed once the color code is changed, or exceptionally with an {@link IllegalArgumentException} if the given group name is empty or does not exist or the color code is not within the range of 0 to 15, or an {@link SQLException} if something goes wrong with the database connection
+     */
+    public CompletableFuture<Void> editGroupColorCode(String group, int colorCode) {
+        return run(() -> databaseManager.editGroupColorCode(group, colorCode));
+    }
+
+    /**
+     * Changes the given group's level to the given new level on the executor (see {@link DatabaseManager#editGroupLevel(String, int)})
+     * @param group the group's name
+     * @param level the group's new level
+     * @return a future completed once the level is changed, or exceptionally with an {@link IllegalArgumentException} if the given group name is empty or does not exist, or an {@link SQLException} if something goes wrong with the database connection
+     */
+    public CompletableFuture<Void> editGroupLevel(String group, int level) {
+        return run(() -> databaseManager.editGroupLevel(group, level));
+    }
+
+    /**
+     * Collects all users belonging to the given group on the executor, the default group's implicit members are not included (see {@link DatabaseManager#getGroupsUsers(String)})
+     * @param group the given group's name
+     * @return a future completed with a list of the group's members' uuids, or exceptionally with an {@link IllegalArgumentException} if the given group name is empty or does not exist, or an {@link SQLException} if something goes wrong with the database connection
+     */
+    public CompletableFuture<List<String>> getGroupsUsers(String group) {
+        return supply(() -> databaseManager.getGroupsUsers(group));
+    }
+
+    /**
+     * Deletes the given group and its memberships on the executor unless it's the default group (see {@link DatabaseManager#removeGroup(String)})
+     * @param group the group's name
+     * @return a future completed once the group is deleted, or exceptionally with an {@link IllegalArgumentException} if the given group name is empty or does not exist or is the default group's name, or an {@link SQLException} if something goes wrong with the database connection
+     */
+    public CompletableFuture<Void> removeGroup(String group) {
+        return run(() -> databaseManager.removeGroup(group));
+    }
+
+    /**
+     * Adds the given user to the given group on the executor (see {@link DatabaseManager#addUserToGroup(String, String)})
+     * @param uuid the user's uuid
+     * @param group the given group's name
+     * @return a future completed once the user is added, or exceptionally with an {@link IllegalArgumentException} if the given group name is empty or does not exist or is the default group's name or the given uuid is not valid or the given user is already member of the given group, or an {@link SQLException} if something goes wrong with the database connection
+     */
+    public CompletableFuture<Void> addUserToGroup(String uuid, String group) {
+        return run(() -> databaseManager.addUserToGroup(uuid, group));
+    }
+
+    /**
+     * Adds the given user to the given group for the given time on the executor (see {@link DatabaseManager#addUserToGroup(String, String, int, int, int, int)})
+     * @param uuid the user's uuid
+     * @param group the given group's name
+     * @param days the days the membership lasts
+     * @param hours the hours the membership lasts
+     * @param minutes the minutes the membership lasts
+     * @param seconds the seconds the membership lasts
+     * @return a future completed once the user is added, or exceptionally with an {@link IllegalArgumentException} if one of the given times is negative or the given group name is empty or does not exist or is the default group's name or the given uuid is not valid or the given user is already member of the given group, or an {@link SQLException} if something goes wrong with the database connection
+     */
+    public CompletableFuture<Void> addUserToGroup(String uuid, String group, int days, int hours, int minutes, int seconds) {
+        return run(() -> databaseManager.addUserToGroup(uuid, group, days, hours, minutes, seconds));
+    }
+
+    /**
+     * Removes the given user from the given group on the executor (see {@link DatabaseManager#removeUserFromGroup(String, String)})
+     * @param uuid the user's uuid
+     * @param group the group's name
+     * @return a future completed once the user is removed, or exceptionally with an {@link IllegalArgumentException} if one of the given parameters is an empty String or the given group does not exist or is the default group or the given uuid is not valid or the given user is no member of the given group, or an {@link SQLException} if something goes wrong with the database connection
+     */
+    public CompletableFuture<Void> removeUserFromGroup(String uuid, String group) {
+        return run(() -> databaseManager.removeUserFromGroup(uuid, group));
+    }
+
+    /**
+     * Collects the names of all the user's groups on the executor (see {@link DatabaseManager#getGroups(String)})
+     * @param uuid the user's uuid
+     * @return a future completed with a list of all the groups' names the given user is member of (only the default group's name if the user has no memberships), or exceptionally with an {@link IllegalArgumentException} if the given uuid is an empty String or not a valid uuid, or an {@link SQLException} if something goes wrong with the database connection
+     */
+    public CompletableFuture<List<String>> getGroups(String uuid) {
+        return supply(() -> databaseManager.getGroups(uuid));
+    }
+
+    /**
+     * Returns the given group's level (see {@link DatabaseManager#getGroupLevel(String)})
+     * @param group the group's name
+     * @return a future completed with the given group's level, or exceptionally with an {@link IllegalArgumentException} if the given group does not exist or is an empty String, or an {@link SQLException} if something goes wrong with the database connection
+     */
+    public CompletableFuture<Integer> getGroupLevel(String group) {
+        return supply(() -> databaseManager.getGroupLevel(group));
+    }
+
+    /**
+     * Returns the given group's color char (see {@link DatabaseManager#getGroupColorChar(String)})
+     * @param group the group's name
+     * @return a future completed with the given group's color char, or exceptionally with an {@link IllegalArgumentException} if the given group does not exist or is an empty String, or an {@link SQLException} if something goes wrong with the database connection
+     */
+    public CompletableFuture<Character> getGroupColorChar(String group) {
+        return supply(() -> databaseManager.getGroupColorChar(group));
+    }
+
+    /**
+     * Returns the given group's prefix (see {@link DatabaseManager#getGroupPrefix(String)})
+     * @param group the group's name
+     * @return a future completed with the given group's prefix, or exceptionally with an {@link IllegalArgumentException} if the given group does not exist or is an empty String, or an {@link SQLException} if something goes wrong with the database connection
+     */
+    public CompletableFuture<String> getGroupPrefix(String group) {
+        return supply(() -> databaseManager.getGroupPrefix(group));
+    }
+
+    /**
+     * Returns the prefix for the given user - which is equal to the prefix of the user's group with the highest level (see {@link DatabaseManager#getUserPrefix(String)})
+     * @param uuid the user's uuid
+     * @return a future completed with the prefix for the given user, or exceptionally with an {@link IllegalArgumentException} if the given uuid is an empty String or not a valid uuid, or an {@link SQLException} if something goes wrong with the database connection
+     */
+    public CompletableFuture<String> getUserPrefix(String uuid) {
+        return supply(() -> databaseManager.getUserPrefix(uuid));
+    }
+
+    /**
+     * Returns the color char for the given user - which is equal to the color char of the user's group with the highest level (see {@link DatabaseManager#getUserColorChar(String)})
+     * @param uuid the user's uuid
+     * @return a future completed with the color char for the given user, or exceptionally with an {@link IllegalArgumentException} if the given uuid is an empty String or not a valid uuid, or an {@link SQLException} if something goes wrong with the database connection
+     */
+    public CompletableFuture<Character> getUserColorChar(String uuid) {
+        return supply(() -> databaseManager.getUserColorChar(uuid));
+    }
+
+    /**
+     * Returns the date and time until the user is no member of the given group anymore (see {@link DatabaseManager#groupTimeLeft(String, String)})
+     * @param uuid the user's uuid
+     * @param group the group's name
+     * @return a future completed with the date and time until the user is no member of the given group anymore ({@link LocalDateTime#MAX} for a permanent or implicit default group membership, null if the user is no member), or exceptionally with an {@link IllegalArgumentException} if the given group name or uuid is an empty String or the uuid is not valid, or an {@link SQLException} if something goes wrong with the database connection
+     */
+    public CompletableFuture<LocalDateTime> groupTimeLeft(String uuid, String group) {
+        return supply(() -> databaseManager.groupTimeLeft(uuid, group));
+    }
+
+    /**
+     * Returns a list of all existing groups (see {@link DatabaseManager#getAllGroups()})
+     * @return a future completed with an unmodifiable list of all existing groups in alphabetical order, or exceptionally with an {@link SQLException} if something goes wrong with the database connection
+     */
+    public CompletableFuture<List<String>> getAllGroups() {
+        return supply(databaseManager::getAllGroups);
+    }
+
+    /**
+     * Returns the name of the user's group with the highest level, the default group counts for every user (see {@link DatabaseManager#getUsersGroupWithHighestLevel(String)})
+     * @param uuid the user's uuid
+     * @return a future completed with the name of the user's group with the highest level, or exceptionally with an {@link IllegalArgumentException} if the given uuid is an empty String or not a valid uuid, or an {@link SQLException} if something goes wrong with the database connection
+     */
+    public CompletableFuture<String> getUsersGroupWithHighestLevel(String uuid) {
+        return supply(() -> databaseManager.getUsersGroupWithHighestLevel(uuid));
+    }
+
+    /**
+     * Returns name, prefix, color char and level of the user's group with the highest level (see {@link DatabaseManager#getUsersEffectiveGroup(String)})
+     * @param uuid the user's uuid
+     * @return a future completed with the user's group with the highest level, or exceptionally with an {@link IllegalArgumentException} if the given uuid is an empty String or not a valid uuid, or an {@link SQLException} if something goes wrong with the database connection
+     */
+    public CompletableFuture<EffectiveGroup> getUsersEffectiveGroup(String uuid) {
+        return supply(() -> databaseManager.getUsersEffectiveGroup(uuid));
+    }
+
+    /**
+     * Runs the given database call on the executor
+     * @param call the database call
+     * @param <T> the call's result type
+     * @return a future completed with the call's result or exceptionally with the thrown {@link SQLException}/{@link IllegalArgumentException}
+     */
+    public <T> CompletableFuture<T> supply(DatabaseCall<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(call.call());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Runs the given database action on the executor
+     * @param action the database action
+     * @return a future completed after the action or exceptionally with the thrown {@link SQLException}/{@link IllegalArgumentException}
+     */
+    public CompletableFuture<Void> run(DatabaseAction action) {
+        return supply(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Returns an executor running its tasks on the server's main thread
+     * @return an executor running its tasks on the server's main thread
+     */
+    public Executor mainThread() {
+        return mainThreadExecutor;
+    }
+
+    /**
+     * Hands the given future's outcome to the given callback on the server's main thread
+     * @param future the future
+     * @param callback gets the result or the thrown exception (unwrapped from {@link CompletionException}) - exactly one of them is not null
+     * @param <T> the future's result type
+     */
+    public <T> void thenSync(CompletableFuture<T> future, BiConsumer<? super T, ? super Throwable> callback) {
+        future.whenCompleteAsync((result, throwable) -> callback.accept(result, unwrap(throwable)), mainThreadExecutor);
+    }
+
+    /**
+     * Returns the executor running the database operations
+     * @return the executor running the database operations
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Stops accepting new operations and waits a short time for the running ones
+     */
+    public void close() {
+        executor.shutdown();
+        try {
+            if(!executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS))
+                executor.shutdownNow();
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Removes the {@link CompletionException} wrapper added by chained futures
+     * @param throwable the thrown exception, may be null
+     * @return the actual cause
+     */
+    public static Throwable unwrap(Throwable throwable) {
+        while((throwable instanceof CompletionException || throwable instanceof ExecutionException) && throwable.getCause() != null)
+            throwable = throwable.getCause();
+        return throwable;
+    }
+
+    // HELPER
+
+    /**
+     * Creates the executor running the database operations
+     * @param threads the number of platform threads
+     * @param virtualThreads whether virtual threads should be used if the runtime supports them
+     * @return the executor
+     */
+    private static ExecutorService createExecutor(int threads, boolean virtualThreads) {
+        if(virtualThreads) {
+            try {
+                // looked up reflectively, so the plugin still runs on Java 17 servers
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                if(Bukkit.getServer() != null)
+                    Bukkit.getLogger().warning("Virtual threads need Java 21, using " + threads + " platform threads instead!");
+            }
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "GroupPluginSchnatz-Database-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * A database call returning a value
+     * @param <T> the result type
+     */
+    @FunctionalInterface
+    public interface DatabaseCall<T> {
+        /**
+         * Executes the call
+         * @return the call's result
+         * @throws SQLException if something goes wrong with the database connection
+         */
+        T call() throws SQLException;
+    }
+
+    /**
+     * A database action without a result
+     */
+    @FunctionalInterface
+    public interface DatabaseAction {
+        /**
+         * Executes the action
+         * @throws SQLException if something goes wrong with the database connection
+         */
+        void run() throws SQLException;
+    }
+}
@@ -37,6 +37,19 @@ public class ConfigBuilder {
     public void buildDefaultConfig() {
         config.addDefault("DatabaseIpAddress", "localhost");
         config.addDefault("DatabasePort", 3306);
+        config.addDefault("DatabasePoolSize", 10);
+        config.addDefault("DatabasePoolConnectionTimeout", 5000);
+        config.addDefault("DatabasePoolIdleTimeout", 600000);
+        config.addDefault("DatabasePoolLeakDetectionThreshold", 10000);
+        config.addDefault("DatabaseExecutorThreads", 4);
+        config.addDefault("DatabaseExecutorVirtualThreads", false);
+        config.addDefault("DatabaseExpirationHorizon", 3600000);
+        config.addDefault("DatabaseRefreshTickBudget", 2000);
+        config.addDefault("DatabaseMigrationChunkSize", 1000);
+        config.addDefault("DatabaseWriteBehind", false);
+        config.addDefault("DatabaseWriteBehindCapacity", 10000);
+        config.addDefault("DatabaseWriteBehindBatchSize", 500);
+        config.addDefault("DatabaseWriteBehindInterval", 1000);
         config.addDefault("DatabaseUser", "root");
         config.addDefault("DatabasePassword", "Y#rJj1R-vojdE#i:9A:E!w1bt8_^fEP:E01=cN9M~PX2k2mE.z9om>Hz4@^-~uK4");
         config.addDefault("DatabaseName", "ServerGroups");
@@ -50,12 +63,17 @@ public class ConfigBuilder {
         config.addDefault("MessageServerLeave", "\u00A77[\u00A7%color%%prefix%\u00A77]\u00A7%color%%name% \u00A7fleft the Server");
         config.addDefault("MessageChat", "\u00A77[\u00A7%color%%prefix%\u00A77]\u00A7%color%%name%\u00A7f: %message%");
 
+        config.addDefault("CommandTimeout", 10000);
+        config.addDefault("CommandTimeoutMessage", "The command is still running, the result follows once it is done!");
+        config.addDefault("TabCompletionLimit", 50);
+
         config.addDefault("CommandAddUserToGroupInsufficientPermissionMessage", "You have insufficient permission to use this command!");
         config.addDefault("CommandAddUserToGroupUsageMessage", "Please use as following: /addusertogroup <username> <groupname> <duration> (e.g. \"/addusertogroup Hans Admin 5:14:10:12\" will add Hans to group Admin for 5 days, 14 hours, 10 minutes and 12 seconds.");
         config.addDefault("CommandAddUserToGroupSqlErrorMessage", "Something went wrong internally, please try again later!");
         config.addDefault("CommandAddUserToGroupPlayerNotFoundMessage", "Could not find a player named %name%!");
         config.addDefault("CommandAddUserToGroupGroupNameDoesNotExistMessage", "There is no group with the given name!");
         config.addDefault("CommandAddUserToGroupUserAlreadyMemberOfGroupMessage", "The given user is already member of the given group!");
+        config.addDefault("CommandAddUserToGroupDefaultGroupMessage", "Every player without another group is member of the default group, players can not be added to it!");
         config.addDefault("CommandAddUserToGroupAddedUserToGroupMessage", "Added %user% to group %group%.");
         config.addDefault("CommandAddUserToGroupNegativeTimeSpecificationMessage", "Time specifications must not be negative!");
         config.addDefault("CommandAddUserToGroupIllegalTimeFormatMessage", "The time must have one of the following formats: days:hours:minutes:seconds/hours:minutes:seconds/minutes:seconds/seconds");
@@ -137,6 +155,7 @@ public class ConfigBuilder {
         config.addDefault("CommandRemoveUserFromGroupGroupNameDoesNotExistMessage", "There is no group with the given name!");
         config.addDefault("CommandRemoveUserFromGroupPlayerNotFoundMessage", "Could not find a player named %name%!");
         config.addDefault("CommandRemoveUserFromGroupUserNotMemberOfGroupMessage", "The given user is not member of that group!");
+        config.addDefault("CommandRemoveUserFromGroupDefaultGroupMessage", "Every player without another group is member of the default group, players can not be removed from it!");
         config.addDefault("CommandRemoveUserFromGroupRemovedUserFromGroupMessage", "Removed %user% from group %group%.");
 
         config.addDefault("CommandSignInsufficientPermissionMessage", "You have insufficient permission to use this command!");
@@ -145,7 +164,6 @@ public class ConfigBuilder {
         config.addDefault("CommandSignSqlErrorMessage", "Something went wrong internally, please try again later!");
         config.addDefault("CommandSignUserNotFoundMessage", "The given user could not be found!");
         config.addDefault("CommandSignSignMustReplaceAirMessage", "Signs must only replace air!");
-        config.addDefault("CommandSignNotMemberOfGroupMessage", "The user is not member of a group!");
         config.addDefault("CommandSignMustStandOnSolidBlockMessage", "You must stand on a solid block to perform this command!");
 
         config.options().copyDefaults(true);
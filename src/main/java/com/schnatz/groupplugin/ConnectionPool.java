@@ -0,0 +1,359 @@
+package com.schnatz.groupplugin;
+
+import org.bukkit.Bukkit;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * This class is a bounded pool of database connections.
+ * Connections are validated when they are borrowed, closed after being unused for too long
+ * and reported when they are borrowed for longer than the leak detection threshold.
+ * @author Henry Schnatz
+ */
+public class ConnectionPool implements AutoCloseable {
+    /**
+     * The time in seconds a validation of a connection may take
+     */
+    private static final int VALIDATION_TIMEOUT = 2;
+    /**
+     * The time in milliseconds after returning a connection in which it is handed out again without validation
+     */
+    private static final long VALIDATION_BYPASS_WINDOW = 500;
+    /**
+     * The interval in milliseconds in which idle connections and leaks are checked
+     */
+    private static final long HOUSEKEEPING_INTERVAL = 30000;
+    /**
+     * The url used to open new connections
+     */
+    private final String url;
+    /**
+     * The user used to open new connections
+     */
+    private final String user;
+    /**
+     * The password used to open new connections
+     */
+    private final String password;
+    /**
+     * The time in milliseconds a thread waits for a free connection
+     */
+    private final long connectionTimeout;
+    /**
+     * The time in milliseconds after which an unused connection gets closed
+     */
+    private final long idleTimeout;
+    /**
+     * The time in milliseconds a connection may be borrowed before it is reported (0 disables the detection)
+     */
+    private final long leakDetectionThreshold;
+    /**
+     * One permit per connection that may be borrowed at the same time
+     */
+    private final Semaphore permits;
+    /**
+     * The connections that are currently not borrowed, the most recently returned one first
+     */
+    private final BlockingDeque<PooledConnection> idleConnections;
+    /**
+     * The connections that are currently borrowed
+     */
+    private final Set<PooledConnection> borrowedConnections;
+    /**
+     * The executor evicting idle connections and detecting leaks
+     */
+    private final ScheduledExecutorService housekeeper;
+    /**
+     * Whether the pool was closed
+     */
+    private volatile boolean closed;
+
+    /**
+     * Initialises the pool, no connection is opened before it is needed
+     * @param url the url used to open new connections
+     * @param user the user used to open new connections
+     * @param password the password used to open new connections
+     * @param maxSize the maximum number of connections
+     * @param connectionTimeout the time in milliseconds a thread waits for a free connection
+     * @param idleTimeout the time in milliseconds after which an unused connection gets closed
+     * @param leakDetectionThreshold the time in milliseconds a connection may be borrowed before it is reported (0 disables the detection)
+     */
+    public ConnectionPool(String url, String user, String password, int maxSize, long connectionTimeout, long idleTimeout, long leakDetectionThreshold) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.connectionTimeout = connectionTimeout;
+        this.idleTimeout = idleTimeout;
+        this.leakDetectionThreshold = leakDetectionThreshold;
+        this.permits = new Semaphore(maxSize, true);
+        this.idleConnections = new LinkedBlockingDeque<>();
+        this.borrowedConnections = ConcurrentHashMap.newKeySet();
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "GroupPluginSchnatz-ConnectionPool");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.housekeeper.scheduleWithFixedDelay(this::houseKeeping, HOUSEKEEPING_INTERVAL, HOUSEKEEPING_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool. Closing the returned connection gives it back to the pool.
+     * Every borrowing gets its own handle, once it is closed it stays closed even if the connection is borrowed again.
+     * @return a valid connection to the database
+     * @throws SQLException if the pool is closed, no connection got free in time or a new connection could not be opened
+     */
+    public Connection getConnection() throws SQLException {
+        if(closed)
+            throw new SQLException("The connection pool is closed!");
+        try {
+            if(!permits.tryAcquire(connectionTimeout, TimeUnit.MILLISECONDS))
+                throw new SQLTimeoutException("No database connection got free within " + connectionTimeout + "ms!");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection!", e);
+        }
+        try {
+            PooledConnection pooledConnection;
+            while((pooledConnection = idleConnections.pollFirst()) != null) {
+                if(pooledConnection.isUsable())
+                    break;
+                pooledConnection.closeQuietly();
+            }
+            if(pooledConnection == null)
+                pooledConnection = new PooledConnection(DriverManager.getConnection(url, user, password));
+            Connection handle = pooledConnection.borrow();
+            borrowedConnections.add(pooledConnection);
+            return handle;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of connections that are currently borrowed
+     * @return the number of connections that are currently borrowed
+     */
+    public int getBorrowedConnections() {
+        return borrowedConnections.size();
+    }
+
+    /**
+     * Returns the number of connections that are currently waiting to be borrowed
+     * @return the number of connections that are currently waiting to be borrowed
+     */
+    public int getIdleConnections() {
+        return idleConnections.size();
+    }
+
+    /**
+     * Closes all idle connections and stops the pool. Borrowed connections get closed when they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooledConnection;
+        while((pooledConnection = idleConnections.pollFirst()) != null)
+            pooledConnection.closeQuietly();
+    }
+
+    // HELPER
+
+    /**
+     * Takes back the given connection after it was closed by its borrower
+     * @param pooledConnection the returned connection
+     */
+    private void release(PooledConnection pooledConnection) {
+        borrowedConnections.remove(pooledConnection);
+        try {
+            if(closed || !pooledConnection.reset())
+                pooledConnection.closeQuietly();
+            else
+                idleConnections.offerFirst(pooledConnection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes connections that have been idle for too long and reports borrowed connections that were not returned in time
+     */
+    private void houseKeeping() {
+        long now = System.currentTimeMillis();
+        for(PooledConnection pooledConnection : idleConnections) {
+            if(now - pooledConnection.lastAccess > idleTimeout && idleConnections.remove(pooledConnection))
+                pooledConnection.closeQuietly();
+        }
+        if(leakDetectionThreshold <= 0 || Bukkit.getServer() == null)
+            return;
+        for(PooledConnection pooledConnection : borrowedConnections) {
+            Exception borrowTrace = pooledConnection.borrowTrace;
+            if(!pooledConnection.leakReported && borrowTrace != null && now - pooledConnection.lastAccess > leakDetectionThreshold) {
+                pooledConnection.leakReported = true;
+                Bukkit.getLogger().warning("A database connection has been borrowed for more than " + leakDetectionThreshold + "ms, possible leak at:");
+                for(StackTraceElement element : borrowTrace.getStackTrace())
+                    Bukkit.getLogger().warning("    at " + element);
+            }
+        }
+    }
+
+    /**
+     * A physical connection of the pool
+     */
+    private class PooledConnection {
+        /**
+         * The physical connection to the database
+         */
+        private final Connection connection;
+        /**
+         * The time in milliseconds when the connection was borrowed or returned the last time
+         */
+        private volatile long lastAccess;
+        /**
+         * The stack trace of the current borrower, only recorded if leak detection is enabled
+         */
+        private volatile Exception borrowTrace;
+        /**
+         * Whether the current borrowing was already reported as possible leak
+         */
+        private volatile boolean leakReported;
+
+        /**
+         * Wraps the given physical connection
+         * @param connection the physical connection to the database
+         */
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+            this.lastAccess = System.currentTimeMillis();
+        }
+
+        /**
+         * Marks the connection as borrowed by the current thread
+         * @return a new handle of the connection for the current borrower, closing it returns the connection to the pool
+         */
+        private Connection borrow() {
+            leakReported = false;
+            borrowTrace = leakDetectionThreshold > 0 ? new Exception() : null;
+            lastAccess = System.currentTimeMillis();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, new Handle(this));
+        }
+
+        /**
+         * Checks whether the connection can be handed out again, recently returned connections are not validated again
+         * @return true if the connection is still usable - false if it has to be discarded
+         */
+        private boolean isUsable() {
+            try {
+                if(System.currentTimeMillis() - lastAccess < VALIDATION_BYPASS_WINDOW)
+                    return !connection.isClosed();
+                return connection.isValid(VALIDATION_TIMEOUT);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Rolls back unfinished transactions so the next borrower gets a clean connection
+         * @return true if the connection can be reused - false if it has to be discarded
+         */
+        private boolean reset() {
+            lastAccess = System.currentTimeMillis();
+            borrowTrace = null;
+            try {
+                if(connection.isClosed())
+                    return false;
+                if(!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Closes the physical connection ignoring all errors
+         */
+        private void closeQuietly() {
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+                // the connection is discarded anyway
+            }
+        }
+    }
+
+    /**
+     * The handle of a pooled connection given to one borrower, it can only return the connection once
+     */
+    private class Handle implements InvocationHandler {
+        /**
+         * The borrowed connection
+         */
+        private final PooledConnection pooledConnection;
+        /**
+         * Whether the borrower already returned the connection with this handle
+         */
+        private boolean returned;
+
+        /**
+         * Initialises the handle of the given borrowed connection
+         * @param pooledConnection the borrowed connection
+         */
+        private Handle(PooledConnection pooledConnection) {
+            this.pooledConnection = pooledConnection;
+        }
+
+        /**
+         * Returns whether the borrower already returned the connection with this handle
+         * @return whether the borrower already returned the connection with this handle
+         */
+        private synchronized boolean isReturned() {
+            return returned;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    synchronized (this) {
+                        if(returned)
+                            return null;
+                        returned = true;
+                    }
+                    release(pooledConnection);
+                    return null;
+                case "isClosed":
+                    return isReturned() || pooledConnection.connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + pooledConnection.connection;
+                default:
+                    if(isReturned())
+                        throw new SQLException("The connection has already been returned to the pool!");
+                    try {
+                        return method.invoke(pooledConnection.connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
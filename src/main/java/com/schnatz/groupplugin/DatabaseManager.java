@@ -4,14 +4,21 @@ import com.schnatz.groupplugin.commands.CommandSign;
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.Plugin;
 
+import java.nio.ByteBuffer;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.*;
-import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class is used to manage all database actions.
+ * The default group's membership is implicit: a user is member of the default group exactly when the user has no other membership, it is never stored.
+ * Its level still counts for every user when choosing the group with the highest level, like the default membership every player used to get stored on join.
  * @author Henry Schnatz
  */
 @SuppressWarnings("ConstantConditions")
@@ -21,9 +28,17 @@ public class DatabaseManager {
      */
     private final Plugin plugin;
     /**
-     * The timer used by the class
+     * The timing wheel removing users from their groups when their memberships expire
      */
-    private final Timer timer;
+    private final TimingWheel<Membership> expirations;
+    /**
+     * The executor loading the expirations of the next horizon into {@link DatabaseManager#expirations}
+     */
+    private final ScheduledExecutorService expirationPager;
+    /**
+     * The time in milliseconds since the epoch up to which all expirations are loaded into {@link DatabaseManager#expirations}
+     */
+    private volatile long expirationsLoadedUntil;
     /**
      * The name of the table used to store the server groups
      */
@@ -32,6 +47,10 @@ public class DatabaseManager {
      * The name of the table used to store the users' attributes
      */
     private static final String TABLE_USERS  = "users";
+    /**
+     * The name of the column used to store the group id
+     */
+    private static final String TABLE_GROUPS_ATTRIBUTE_GROUPID = "groupid";
     /**
      * The name of the column used to store the group name
      */
@@ -53,13 +72,41 @@ public class DatabaseManager {
      */
     private static final String TABLE_USERS_ATTRIBUTE_USERUUID = "useruuid";
     /**
-     * The name of the column used to store the user's group
+     * The name of the column used to store the id of the user's group
      */
-    private static final String TABLE_USERS_ATTRIBUTE_USERGROUP = "groupname";
+    private static final String TABLE_USERS_ATTRIBUTE_GROUPID = "groupid";
     /**
      * The name of the column used to store the expiration time of the user's group
      */
     private static final String TABLE_USERS_ATTRIBUTE_EXPIRATIONTIME = "expirationtime";
+    /**
+     * The name of the table used to store the player signs
+     */
+    private static final String TABLE_SIGNS = "signs";
+    /**
+     * The name of the column used to store the name of the sign's world
+     */
+    private static final String TABLE_SIGNS_ATTRIBUTE_WORLD = "world";
+    /**
+     * The name of the column used to store the sign's packed coordinates
+     */
+    private static final String TABLE_SIGNS_ATTRIBUTE_POSITION = "position";
+    /**
+     * The name of the column used to store the uuid of the player the sign belongs to
+     */
+    private static final String TABLE_SIGNS_ATTRIBUTE_USERUUID = "useruuid";
+    /**
+     * The MySQL error code of a statement violating a unique key
+     */
+    private static final int ERROR_DUPLICATE_KEY = 1062;
+    /**
+     * The MySQL error code of a statement referencing a row that does not exist (foreign key)
+     */
+    private static final int ERROR_MISSING_REFERENCE = 1452;
+    /**
+     * The time in milliseconds after which expired memberships are removed again if removing them failed
+     */
+    private static final long EXPIRATION_RETRY_DELAY = 30000;
     /**
      * The IP address which is used to connect to the database
      */
@@ -97,9 +144,57 @@ public class DatabaseManager {
      */
     private final int defaultGroupColorCode;
     /**
-     * The {@link Connection} to the database
+     * The tuning parameters used by this class
+     */
+    private final DatabaseSettings settings;
+    /**
+     * The {@link ConnectionPool} every database action borrows its {@link Connection} from
+     */
+    private ConnectionPool connectionPool;
+    /**
+     * The registry of the {@link Sql} statements, every database action goes through it
+     */
+    private StatementRegistry statements;
+    /**
+     * The non-blocking facade of this class
+     */
+    private final AsyncDatabaseManager asyncDatabaseManager;
+    /**
+     * The cache holding the effective groups of the online players
+     */
+    private final EffectiveGroupCache effectiveGroupCache;
+    /**
+     * The current snapshot of the server group table, replaced after every change of the table
+     */
+    private volatile GroupTable groupTable;
+    /**
+     * The registry of all player signs
+     */
+    private final SignRegistry signRegistry;
+    /**
+     * The prefix tree of all group names, used for tab completions
+     */
+    private final PrefixTrie groupNameIndex;
+    /**
+     * The prefix tree of the names of all known players, used for tab completions
+     */
+    private final PrefixTrie playerNameIndex;
+    /**
+     * The queue refreshing the users' ingame appearance on the main thread
+     */
+    private final MainThreadQueue refreshQueue;
+    /**
+     * A map mapping the uuids of the users being refreshed on the ticket of their latest refresh, outdated refreshes are dropped
+     */
+    private final Map<String, Long> latestRefreshes;
+    /**
+     * The source of the refresh tickets
+     */
+    private final AtomicLong refreshTickets;
+    /**
+     * The queue collecting the membership changes in write-behind mode ({@link DatabaseSettings#isWriteBehind()}), null if the changes are written immediately
      */
-    private Connection connection;
+    private final MembershipWriteQueue writeQueue;
 
     /**
      * Initialises the missing variables with the given values
@@ -115,8 +210,27 @@ public class DatabaseManager {
      * @throws SQLException if connecting to the database or initialising it goes wrong
      */
     public DatabaseManager(String ipAddress, int port, String user, String password, String databaseName, String defaultGroupName, String defaultGroupPrefix, int defaultGroupLevel, int defaultGroupColorCode) throws SQLException {
+        this(ipAddress, port, user, password, databaseName, defaultGroupName, defaultGroupPrefix, defaultGroupLevel, defaultGroupColorCode, new DatabaseSettings());
+    }
+
+    /**
+     * Initialises the missing variables with the given values
+     * @param ipAddress the ip address used to access the database
+     * @param port the port used to access the database
+     * @param user the username used to access the database
+     * @param password the password used to access the database
+     * @param databaseName the name of the database
+     * @param defaultGroupName the default group's name
+     * @param defaultGroupPrefix the default group's prefix
+     * @param defaultGroupLevel the default group's level
+     * @param defaultGroupColorCode the default group's color code
+     * @param settings the tuning parameters (e.g. the connection pool's size)
+     * @throws SQLException if connecting to the database or initialising it goes wrong
+     */
+    public DatabaseManager(String ipAddress, int port, String user, String password, String databaseName, String defaultGroupName, String defaultGroupPrefix, int defaultGroupLevel, int defaultGroupColorCode, DatabaseSettings settings) throws SQLException {
         this.plugin = Main.getPlugin();
-        this.timer = new Timer();
+        this.settings = settings;
+        this.expirations = new TimingWheel<>(1000, this::expireMemberships, "GroupPluginSchnatz-Expirations");
         // initializing the missing class attributes
         this.ipAddress = ipAddress;
         this.port = port;
@@ -127,6 +241,13 @@ public class DatabaseManager {
         this.defaultGroupPrefix = defaultGroupPrefix;
         this.defaultGroupLevel = defaultGroupLevel;
         this.defaultGroupColorCode = defaultGroupColorCode;
+        this.effectiveGroupCache = new EffectiveGroupCache(this);
+        this.asyncDatabaseManager = new AsyncDatabaseManager(this, settings.getExecutorThreads(), settings.isExecutorVirtualThreads());
+        this.refreshQueue = new MainThreadQueue(settings.getRefreshTickBudget());
+        this.latestRefreshes = new ConcurrentHashMap<>();
+        this.refreshTickets = new AtomicLong();
+        if(Bukkit.getServer() != null)
+            refreshQueue.start(plugin);
 
         // connecting to the database
         connect();
@@ -134,48 +255,145 @@ public class DatabaseManager {
         // initializing tables
         initTables();
 
-        // addTimerTasks
-        scheduleExpirations();
+        // collecting the membership changes and writing them in batches if configured
+        this.writeQueue = settings.isWriteBehind() ? new MembershipWriteQueue(this::writeMemberships, this::isStoredMember, settings.getWriteBehindCapacity(), settings.getWriteBehindBatchSize(), settings.getWriteBehindInterval()) : null;
+
+        // indexing the group names for tab completions
+        this.groupNameIndex = new PrefixTrie();
+        for(String name : groupTable.getNames())
+            groupNameIndex.add(name);
+        this.playerNameIndex = new PrefixTrie();
+
+        // loading the player signs
+        this.signRegistry = new SignRegistry(this);
+        loadSigns();
+
+        // removing the memberships that expired while the server was down
+        long now = System.currentTimeMillis();
+        catchUpExpirations(now);
+
+        // scheduling the membership expirations of the next horizon, later ones are paged in while the server runs
+        this.expirationsLoadedUntil = now;
+        loadExpirations();
+        this.expirationPager = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "GroupPluginSchnatz-ExpirationPager");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long pagingPeriod = Math.max(settings.getExpirationHorizon() / 2, 1000);
+        this.expirationPager.scheduleAtFixedRate(this::pageExpirations, pagingPeriod, pagingPeriod, TimeUnit.MILLISECONDS);
+
     }
 
     /**
-     * Sets the {@link DatabaseManager#connection} to the database
+     * Creates the plugin's database and sets up the {@link DatabaseManager#connectionPool} for it
      * @throws SQLException if a database access error occurs
      */
     private void connect() throws SQLException {
-        // connecting to the database
-        String url = "jdbc:mysql://" + ipAddress + ":" + port + "/";
-        connection = DriverManager.getConnection(url, user, password);
         // creating the plugin's database if it does not exist yet
-        try (Statement statement = connection.createStatement()) {
+        String url = "jdbc:mysql://" + ipAddress + ":" + port + "/";
+        try (Connection connection = DriverManager.getConnection(url, user, password); Statement statement = connection.createStatement()) {
             statement.executeUpdate("CREATE DATABASE IF NOT EXISTS " + databaseName);
         }
-        connection.close();
-        // connecting to the plugin's database
-        url = "jdbc:mysql://" + ipAddress + ":" + port + "/" + databaseName;
-        connection = DriverManager.getConnection(url, user, password);
+        // pooling the connections to the plugin's database, batches are sent to the server in one round trip
+        // and the statements are prepared on the server once per connection
+        url = "jdbc:mysql://" + ipAddress + ":" + port + "/" + databaseName + "?rewriteBatchedStatements=true&useServerPrepStmts=true&cachePrepStmts=true&prepStmtCacheSize=" + Sql.values().length + "&prepStmtCacheSqlLimit=1024";
+        connectionPool = new ConnectionPool(url, user, password, settings.getPoolSize(), settings.getPoolConnectionTimeout(), settings.getPoolIdleTimeout(), settings.getPoolLeakDetectionThreshold());
+        statements = new StatementRegistry(connectionPool, Sql.values());
     }
 
     /**
-     * Creates the needed tables if they do not exist.
+     * Returns the non-blocking facade of this class, its futures complete off the main thread
+     * @return the non-blocking facade of this class
+     */
+    public AsyncDatabaseManager getAsyncDatabaseManager() {
+        return asyncDatabaseManager;
+    }
+
+    /**
+     * Returns the cache holding the effective groups of the online players
+     * @return the cache holding the effective groups of the online players
+     */
+    public EffectiveGroupCache getEffectiveGroupCache() {
+        return effectiveGroupCache;
+    }
+
+    /**
+     * Returns the registry of all player signs
+     * @return the registry of all player signs
+     */
+    public SignRegistry getSignRegistry() {
+        return signRegistry;
+    }
+
+    /**
+     * Returns the prefix tree of all group names (kept up to date by this class)
+     * @return the prefix tree of all group names
+     */
+    public PrefixTrie getGroupNameIndex() {
+        return groupNameIndex;
+    }
+
+    /**
+     * Returns the prefix tree of the names of all known players
+     * @return the prefix tree of the names of all known players
+     */
+    public PrefixTrie getPlayerNameIndex() {
+        return playerNameIndex;
+    }
+
+    /**
+     * Returns the queue refreshing the users' ingame appearance on the main thread
+     * @return the queue refreshing the users' ingame appearance on the main thread
+     */
+    public MainThreadQueue getRefreshQueue() {
+        return refreshQueue;
+    }
+
+    /**
+     * Returns the number of executions of every statement this class uses
+     * @return a map mapping the statements' names on the number of their executions
+     */
+    public Map<String, Long> getStatementExecutionCounts() {
+        return statements.getExecutionCounts();
+    }
+
+    /**
+     * Returns the number of membership changes waiting to be written
+     * @return the number of membership changes waiting to be written, 0 if they are written immediately
+     */
+    public int getPendingWrites() {
+        return writeQueue == null ? 0 : writeQueue.size();
+    }
+
+    /**
+     * Writes the pending membership changes, stops the asynchronous operations and all scheduled expirations and closes all connections to the database
+     */
+    public void close() {
+        // the pending changes are written before anything they depend on is shut down
+        if(writeQueue != null)
+            writeQueue.close();
+        // running operations may still hand refreshes to the refresh queue, so it is closed once they are done
+        asyncDatabaseManager.close();
+        refreshQueue.close();
+        expirationPager.shutdownNow();
+        expirations.close();
+        connectionPool.close();
+    }
+
+    /**
+     * Creates the needed tables if they do not exist or migrates them to the latest schema version ({@link SchemaMigrator}).
      * Fill's the tables with needed default values.
-     * ATTENTION: If the tables already exist this method does not check whether they have the right columns!
      * @throws SQLException if an operation on the database goes wrong
      */
     private void initTables() throws SQLException {
-        // creates the table that stores the groups if not existent
-        try (Statement statement = connection.createStatement()) {
-            statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + TABLE_GROUPS + "(" + TABLE_GROUPS_ATTRIBUTE_GROUPNAME + " VARCHAR (30) NOT NULL, " + TABLE_GROUPS_ATTRIBUTE_GROUPPREFIX + " VARCHAR (10) NOT NULL, " + TABLE_GROUPS_ATTRIBUTE_GROUPLEVEL + " INTEGER NOT NULL, " + TABLE_GROUPS_ATTRIBUTE_GROUPCOLORCODE + " INTEGER NOT NULL, PRIMARY KEY(" + TABLE_GROUPS_ATTRIBUTE_GROUPNAME + "))");
-        }
+        // creates or migrates the tables
+        new SchemaMigrator(connectionPool, settings.getMigrationChunkSize(), defaultGroupName).migrate();
+        reloadGroupTable();
         // insert the default group into the table if not existent
         if (!existsGroup(defaultGroupName)) {
-            try (Statement statement = connection.createStatement()) {
-                statement.executeUpdate("INSERT INTO " + TABLE_GROUPS + "(" + TABLE_GROUPS_ATTRIBUTE_GROUPNAME + ", " + TABLE_GROUPS_ATTRIBUTE_GROUPPREFIX + ", " + TABLE_GROUPS_ATTRIBUTE_GROUPLEVEL + ", " + TABLE_GROUPS_ATTRIBUTE_GROUPCOLORCODE + ") VALUES('" + defaultGroupName + "','" + defaultGroupPrefix + "','" + defaultGroupLevel + "'," + defaultGroupColorCode + ")");
-            }
-        }
-        // creates the table that stores the users' groups if not existent
-        try (Statement statement = connection.createStatement()) {
-            statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + TABLE_USERS + "(" + TABLE_USERS_ATTRIBUTE_USERUUID + " VARCHAR(36) NOT NULL, " + TABLE_USERS_ATTRIBUTE_USERGROUP + " VARCHAR (30) NOT NULL, " + TABLE_USERS_ATTRIBUTE_EXPIRATIONTIME + " TIMESTAMP, PRIMARY KEY(" + TABLE_USERS_ATTRIBUTE_USERUUID + ", " + TABLE_USERS_ATTRIBUTE_USERGROUP + "))");
+            statements.update(Sql.INSERT_GROUP, defaultGroupName, defaultGroupPrefix, defaultGroupLevel, defaultGroupColorCode);
+            reloadGroupTable();
         }
     }
 
@@ -190,21 +408,27 @@ public class DatabaseManager {
      */
     public void createGroup(String name, String prefix, int level, int colorCode) throws IllegalArgumentException, SQLException {
         checkForEmptyString(name, "name");
-        if(existsGroup(name))
-            throw new IllegalArgumentException("The given group name does already exist!");
         if(name.length() > 30)
             throw new IllegalArgumentException("Group names must only be 30 characters long!");
         if(prefix.length() > 10)
             throw new IllegalArgumentException("Group prefixes must only be 10 characters long!");
         if(colorCode < 0 || colorCode > 15)
             throw new IllegalArgumentException("The color codes must be within the range of 0 to 15");
-        try (Statement statement = connection.createStatement()) {
-            statement.executeUpdate("INSERT INTO " + TABLE_GROUPS + "(" + TABLE_GROUPS_ATTRIBUTE_GROUPNAME + ", " + TABLE_GROUPS_ATTRIBUTE_GROUPPREFIX + ", " + TABLE_GROUPS_ATTRIBUTE_GROUPLEVEL + ", " + TABLE_GROUPS_ATTRIBUTE_GROUPCOLORCODE + ") VALUES('" + name + "','" + prefix + "','" + level + "'," + colorCode + ")");
+        try {
+            statements.update(Sql.INSERT_GROUP, name, prefix, level, colorCode);
+        } catch (SQLException e) {
+            // the unique group key already holds the name
+            if(e.getErrorCode() == ERROR_DUPLICATE_KEY)
+                throw new IllegalArgumentException("The given group name does already exist!");
+            throw e;
         }
+        reloadGroupTable();
+        groupNameIndex.add(name);
     }
 
     /**
-     * Changes the given group's name to the given new name
+     * Changes the given group's name to the given new name.
+     * The memberships reference the group's id, so the rename is an atomic single-row change.
      * @param group the group's old name
      * @param newName the group's new name
      * @throws IllegalArgumentException if the given group name is empty or does not exist or is too long or the given new name already exists
@@ -219,12 +443,22 @@ public class DatabaseManager {
             throw new IllegalArgumentException("The default group must not be renamed!");
         if(newName.length() > 30)
             throw new IllegalArgumentException("Group names must only be 30 characters long!");
-        if(existsGroup(newName))
-            throw new IllegalArgumentException("The given new group name does already exist!");
-        try (Statement statement = connection.createStatement()) {
-            statement.executeUpdate("UPDATE " + TABLE_GROUPS + " SET " + TABLE_GROUPS_ATTRIBUTE_GROUPNAME + " = '" + newName + "' WHERE " + TABLE_GROUPS_ATTRIBUTE_GROUPNAME + " = '" + group + "'");
-            statement.executeUpdate("UPDATE " + TABLE_USERS + " SET " + TABLE_USERS_ATTRIBUTE_USERGROUP + " = '" + newName + "' WHERE " + TABLE_USERS_ATTRIBUTE_USERGROUP + " = '" + group + "'");
+        ServerGroup serverGroup = groupTable.get(group);
+        int renamed;
+        try {
+            renamed = statements.update(Sql.RENAME_GROUP, newName, serverGroup.id());
+        } catch (SQLException e) {
+            // the unique group key already holds the new name
+            if(e.getErrorCode() == ERROR_DUPLICATE_KEY)
+                throw new IllegalArgumentException("The given new group name does already exist!");
+            throw e;
         }
+        reloadGroupTable();
+        // the group was deleted concurrently
+        if(renamed == 0)
+            throw new IllegalArgumentException("The given group does not exist!");
+        groupNameIndex.remove(serverGroup.name());
+        groupNameIndex.add(newName);
         updateGroup(newName);
     }
 
@@ -241,9 +475,8 @@ public class DatabaseManager {
             throw new IllegalArgumentException("The given group does not exist!");
         if(prefix.length() > 10)
             throw new IllegalArgumentException("Group prefixes must only be 10 characters long!");
-        try(Statement statement = connection.createStatement()) {
-            statement.executeUpdate("UPDATE " + TABLE_GROUPS + " SET " + TABLE_GROUPS_ATTRIBUTE_GROUPPREFIX + " = '" + prefix + "' WHERE " + TABLE_GROUPS_ATTRIBUTE_GROUPNAME + " = '" + group + "'");
-        }
+        statements.update(Sql.UPDATE_GROUP_PREFIX, prefix, groupTable.get(group).id());
+        reloadGroupTable();
         updateGroup(group);
     }
 
@@ -260,9 +493,8 @@ public class DatabaseManager {
             throw new IllegalArgumentException("The given group does not exist!");
         if(colorCode < 0 || colorCode > 15)
             throw new IllegalArgumentException("The color codes must be within the range of 0 to 15");
-        try(Statement statement = connection.createStatement()) {
-            statement.executeUpdate("UPDATE " + TABLE_GROUPS + " SET " + TABLE_GROUPS_ATTRIBUTE_GROUPCOLORCODE + " = " + colorCode + " WHERE " + TABLE_GROUPS_ATTRIBUTE_GROUPNAME + " = '" + group + "'");
-        }
+        statements.update(Sql.UPDATE_GROUP_COLORCODE, colorCode, groupTable.get(group).id());
+        reloadGroupTable();
         updateGroup(group);
     }
 
@@ -277,14 +509,14 @@ public class DatabaseManager {
         checkForEmptyString(group, "group name");
         if (!existsGroup(group))
             throw new IllegalArgumentException("The given group does not exist!");
-        try(Statement statement = connection.createStatement()) {
-            statement.executeUpdate("UPDATE " + TABLE_GROUPS + " SET " + TABLE_GROUPS_ATTRIBUTE_GROUPLEVEL + " = " + level + " WHERE " + TABLE_GROUPS_ATTRIBUTE_GROUPNAME + " = '" + group + "'");
-        }
+        statements.update(Sql.UPDATE_GROUP_LEVEL, level, groupTable.get(group).id());
+        reloadGroupTable();
         updateGroup(group);
     }
 
     /**
-     * Collects all users belonging to the given group
+     * Collects all users belonging to the given group.
+     * The default group's members are implicit (all users without memberships) and not stored, so its list is always empty, see {@link DatabaseManager#getDefaultGroupsUsers(Collection)}.
      * @param group the given group's name
      * @return a list of the group's members' uuids
      * @throws IllegalArgumentException if the given group name is empty or does not exist
@@ -294,18 +526,39 @@ public class DatabaseManager {
         checkForEmptyString(group, "group name");
         if(!existsGroup(group))
             throw new IllegalArgumentException("The given group does not exist!");
-        List<String> list = new LinkedList<>();
-        try(Statement statement = connection.createStatement()){
-            ResultSet res = statement.executeQuery("SELECT " + TABLE_USERS_ATTRIBUTE_USERUUID + " FROM " + TABLE_USERS + " WHERE lower(" + TABLE_USERS_ATTRIBUTE_USERGROUP + ") ='" + group.toLowerCase() + "'");
-            while(!res.isClosed() && res.next()) {
-                list.add(res.getString(1));
-            }
+        flushWrites();
+        return statements.query(Sql.SELECT_GROUPS_USERS, DatabaseManager::readUuids, groupTable.get(group).id());
+    }
+
+    /**
+     * Collects the implicit members of the default group among the given known users, which are all of them without memberships
+     * @param uuids the known users' uuids (e.g. of all players who joined the server before)
+     * @return a list of the given uuids of the users without memberships
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    public List<String> getDefaultGroupsUsers(Collection<String> uuids) throws SQLException {
+        flushWrites();
+        Set<String> members = new HashSet<>(statements.query(Sql.SELECT_MEMBERS, DatabaseManager::readUuids));
+        List<String> users = new ArrayList<>();
+        for(String uuid : uuids) {
+            if(!members.contains(uuid))
+                users.add(uuid);
         }
-        return list;
+        return users;
+    }
+
+    /**
+     * Checks whether the given group is the default group
+     * @param group the group's name
+     * @return true if the given group is the default group - false if it is another group
+     */
+    public boolean isDefaultGroup(String group) {
+        return defaultGroupName.equalsIgnoreCase(group);
     }
 
     /**
-     * Deletes the given group unless it's the default group
+     * Deletes the given group unless it's the default group.
+     * The group and its memberships are deleted in one transaction, afterwards only the members whose group is visible are refreshed.
      * @param group the group's name
      * @throws IllegalArgumentException if the given group name is empty or does not exist, or it's the default group's name
      * @throws SQLException if something goes wrong with the database connection
@@ -316,20 +569,33 @@ public class DatabaseManager {
             throw new IllegalArgumentException("The default group must not be deleted");
         if(!existsGroup(group))
             throw new IllegalArgumentException("The given group does not exist!");
-        List<String> users = getGroupsUsers(group);
-        for(String u : users) {
-            removeUserFromGroup(u, group);
-        }
-        try(Statement statement = connection.createStatement()){
-            statement.executeUpdate("DELETE FROM " + TABLE_GROUPS + " WHERE " + TABLE_GROUPS_ATTRIBUTE_GROUPNAME + " = '" + group + "'");
+        ServerGroup serverGroup = groupTable.get(group);
+        // queued memberships of the group must not be written after it is gone
+        flushWrites();
+        // the members are locked, so no membership can be added between reading and deleting them
+        List<String> members = statements.transaction(session -> {
+            List<String> uuids = session.query(Sql.LOCK_GROUPS_USERS, DatabaseManager::readUuids, serverGroup.id());
+            session.update(Sql.DELETE_GROUP_MEMBERSHIPS, serverGroup.id());
+            session.update(Sql.DELETE_GROUP, serverGroup.id());
+            return uuids;
+        });
+        reloadGroupTable();
+        groupNameIndex.remove(serverGroup.name());
+        List<String> affected = new ArrayList<>();
+        for(String uuid : members) {
+            expirations.cancel(new Membership(uuid, serverGroup.id()));
+            if(isVisible(uuid))
+                affected.add(uuid);
         }
+        updateUsers(affected);
     }
 
     /**
-     * Adds the given user to the given group
+     * Adds the given user to the given group.
+     * In write-behind mode the membership is only queued, the queued changes count as written when checking for an existing membership.
      * @param uuid the user's uuid
      * @param group the given group's name
-     * @throws IllegalArgumentException if the given group name is empty or does not exist
+     * @throws IllegalArgumentException if the given group name is empty or does not exist or is the default group's name or the given uuid is not valid or the given user is already member of the given group
      * @throws SQLException if something goes wrong with the database connection
      */
     public void addUserToGroup(String uuid, String group) throws IllegalArgumentException, SQLException {
@@ -337,17 +603,16 @@ public class DatabaseManager {
         checkForEmptyString(uuid, "uuid");
         if(!existsGroup(group))
             throw new IllegalArgumentException("The given group does not exist!");
-        String caseSensitiveGroupname;
-        try(Statement statement = connection.createStatement()){
-            ResultSet res = statement.executeQuery("SELECT " + TABLE_GROUPS_ATTRIBUTE_GROUPNAME + " FROM " + TABLE_GROUPS + " WHERE lower(" + TABLE_GROUPS_ATTRIBUTE_GROUPNAME + ") ='" + group + "'");
-            res.next();
-            caseSensitiveGroupname = res.getString(1);
-        }
-        if(getGroups(uuid).contains(group))
-            throw new IllegalArgumentException("The given user is already member of the given group!");
-        try (Statement statement = connection.createStatement()) {
-            statement.executeUpdate("INSERT INTO " + TABLE_USERS + "(" + TABLE_USERS_ATTRIBUTE_USERUUID + ", " + TABLE_USERS_ATTRIBUTE_USERGROUP + ", " + TABLE_USERS_ATTRIBUTE_EXPIRATIONTIME + ") VALUES('" + uuid + "','" + caseSensitiveGroupname + "', NULL)");
+        checkForDefaultGroup(group);
+        int groupId = groupTable.get(group).id();
+        if(writeQueue != null) {
+            // invalid uuids are rejected before they are queued
+            toBinaryUuid(uuid);
+            // the user is updated once the change is written
+            writeQueue.add(uuid, groupId, null);
+            return;
         }
+        insertMembership(uuid, groupId, null);
         updateUser(uuid);
     }
 
@@ -364,35 +629,31 @@ public class DatabaseManager {
 
         Timestamp timestamp = Timestamp.valueOf(time);
 
-        scheduleExpiration(uuid, timestamp);
-
-
         checkForEmptyString(group, "group name");
         checkForEmptyString(uuid, "uuid");
         if(!existsGroup(group))
             throw new IllegalArgumentException("The given group does not exist!");
-        String caseSensitiveGroupname;
-        try(Statement statement = connection.createStatement()){
-            ResultSet res = statement.executeQuery("SELECT " + TABLE_GROUPS_ATTRIBUTE_GROUPNAME + " FROM " + TABLE_GROUPS + " WHERE lower(" + TABLE_GROUPS_ATTRIBUTE_GROUPNAME + ") ='" + group + "'");
-            res.next();
-            caseSensitiveGroupname = res.getString(1);
-        }
-        if(getGroups(uuid).contains(group))
-            throw new IllegalArgumentException("The given user is already member of the given group!");
-        try (PreparedStatement statement = connection.prepareStatement("INSERT INTO " + TABLE_USERS + "(" + TABLE_USERS_ATTRIBUTE_USERUUID + ", " + TABLE_USERS_ATTRIBUTE_USERGROUP + ", " + TABLE_USERS_ATTRIBUTE_EXPIRATIONTIME + ") VALUES(?, ?, ?)")) {
-            statement.setString(1, uuid);
-            statement.setString(2, caseSensitiveGroupname);
-            statement.setTimestamp(3, timestamp);
-            statement.executeUpdate();
-        }
-        updateUser(uuid);
+        checkForDefaultGroup(group);
+        int groupId = groupTable.get(group).id();
+        // invalid uuids are rejected before they are queued or scheduled
+        toBinaryUuid(uuid);
+        if(writeQueue != null)
+            writeQueue.add(uuid, groupId, timestamp);
+        else
+            insertMembership(uuid, groupId, timestamp);
+        // later expirations are loaded by the pager once they enter the horizon
+        if(timestamp.getTime() <= expirationsLoadedUntil)
+            expirations.schedule(new Membership(uuid, groupId), timestamp.getTime());
+        if(writeQueue == null)
+            updateUser(uuid);
     }
 
     /**
-     * Removes the given user from the given group
+     * Removes the given user from the given group.
+     * In write-behind mode the removal is only queued, the queued changes count as written when checking for a missing membership.
      * @param uuid the user's uuid
      * @param group the group's name
-     * @throws IllegalArgumentException if at least one of the given parameters is an empty String or the given group does not exist or the given user is no member of the given group
+     * @throws IllegalArgumentException if at least one of the given parameters is an empty String or the given group does not exist or is the default group or the given uuid is not valid or the given user is no member of the given group
      * @throws SQLException if something goes wrong with the database connection
      */
     public void removeUserFromGroup(String uuid, String group) throws IllegalArgumentException, SQLException{
@@ -400,32 +661,36 @@ public class DatabaseManager {
         checkForEmptyString(group, "group name");
         if(!existsGroup(group))
             throw new IllegalArgumentException("The given group does not exist!");
-        if(!getGroups(uuid).contains(group))
-            throw new IllegalArgumentException("The given user is not a member of the given group!");
-        try(Statement statement = connection.createStatement()){
-            statement.executeUpdate("DELETE FROM " + TABLE_USERS + " WHERE " + TABLE_USERS_ATTRIBUTE_USERGROUP + " = '" + group + "' AND " + TABLE_USERS_ATTRIBUTE_USERUUID + " = '" + uuid + "'");
+        checkForDefaultGroup(group);
+        int groupId = groupTable.get(group).id();
+        if(writeQueue != null) {
+            toBinaryUuid(uuid);
+            writeQueue.remove(uuid, groupId);
+            expirations.cancel(new Membership(uuid, groupId));
+            return;
         }
+        // nothing deleted means there was no such membership
+        if(statements.update(Sql.DELETE_MEMBERSHIP, toBinaryUuid(uuid), groupId) == 0)
+            throw new IllegalArgumentException("The given user is not a member of the given group!");
+        expirations.cancel(new Membership(uuid, groupId));
         updateUser(uuid);
     }
 
     /**
      * Returns a list of all the user's groups' names
      * @param uuid the user's uuid
-     * @return a list of all the groups' names the given user is member of
-     * @throws IllegalArgumentException if the given uuid is an empty String
+     * @return a list of all the groups' names the given user is member of, only the default group's name if the user has no memberships
+     * @throws IllegalArgumentException if the given uuid is an empty String or not a valid uuid
      * @throws SQLException if something goes wrong with the database connection
      */
     public List<String> getGroups(String uuid) throws IllegalArgumentException, SQLException {
         checkForEmptyString(uuid, "uuid");
-        List<String> list = new LinkedList<>();
-        try(Statement statement = connection.createStatement()) {
-            ResultSet res = statement.executeQuery("SELECT " + TABLE_USERS_ATTRIBUTE_USERGROUP + " FROM " + TABLE_USERS + " WHERE " + TABLE_USERS_ATTRIBUTE_USERUUID + " = '" + uuid + "'");
-            while (!res.isClosed() && res.next()) {
-                String groupName = res.getString(TABLE_USERS_ATTRIBUTE_USERGROUP);
-                list.add(groupName);
-            }
-        }
-        return list;
+        flushWrites(uuid);
+        List<String> groups = statements.query(Sql.SELECT_USERS_GROUPS, DatabaseManager::readStrings, toBinaryUuid(uuid));
+        // users without memberships are implicit members of the default group
+        if(groups.isEmpty())
+            return List.of(getDefaultGroup().name());
+        return groups;
     }
 
     /**
@@ -436,14 +701,7 @@ public class DatabaseManager {
      * @throws SQLException if something goes wrong with the database connection
      */
     public int getGroupLevel(String group) throws IllegalArgumentException, SQLException {
-        checkForEmptyString(group, "group name");
-        if(!existsGroup(group))
-            throw new IllegalArgumentException("The given group does not exist");
-        try(Statement statement = connection.createStatement()) {
-            ResultSet res = statement.executeQuery("SELECT " + TABLE_GROUPS_ATTRIBUTE_GROUPLEVEL + " FROM " + TABLE_GROUPS + " WHERE " + TABLE_GROUPS_ATTRIBUTE_GROUPNAME + " = '" + group + "'");
-            res.next();
-            return res.getInt(1);
-        }
+        return getServerGroup(group).level();
     }
 
     /**
@@ -454,17 +712,7 @@ public class DatabaseManager {
      * @throws SQLException if something goes wrong with the database connection
      */
     public char getGroupColorChar(String group) throws IllegalArgumentException, SQLException {
-        checkForEmptyString(group, "group name");
-        if(!existsGroup(group))
-            throw new IllegalArgumentException("The given group does not exist");
-        int colorCode;
-        try(Statement statement = connection.createStatement()) {
-            ResultSet res = statement.executeQuery("SELECT " + TABLE_GROUPS_ATTRIBUTE_GROUPCOLORCODE + " FROM " + TABLE_GROUPS + " WHERE " + TABLE_GROUPS_ATTRIBUTE_GROUPNAME + " = '" + group + "'");
-            res.next();
-            colorCode = res.getInt(1);
-        }
-        // coloCode -> char
-        return Character.forDigit(colorCode, 16);
+        return getServerGroup(group).colorChar();
     }
 
     /**
@@ -475,38 +723,29 @@ public class DatabaseManager {
      * @throws SQLException if something goes wrong with the database connection
      */
     public String getGroupPrefix(String group) throws IllegalArgumentException, SQLException {
-        checkForEmptyString(group, "group name");
-        if(!existsGroup(group))
-            throw new IllegalArgumentException("The given group does not exist");
-        try(Statement statement = connection.createStatement()) {
-            ResultSet res = statement.executeQuery("SELECT " + TABLE_GROUPS_ATTRIBUTE_GROUPPREFIX + " FROM " + TABLE_GROUPS + " WHERE " + TABLE_GROUPS_ATTRIBUTE_GROUPNAME + " = '" + group + "'");
-            res.next();
-            return res.getString(1);
-        }
+        return getServerGroup(group).prefix();
     }
 
     /**
      * Returns prefix for the given user - which is equal to the prefix of the group with the highest lvl the user is member of
      * @param uuid the user's uuid
      * @return the prefix for the given user
-     * @throws IllegalArgumentException if the given uuid is an empty String or the user is not member of any groups
+     * @throws IllegalArgumentException if the given uuid is an empty String or not a valid uuid
      * @throws SQLException if something goes wrong with the database connection
      */
     public String getUserPrefix(String uuid) throws IllegalArgumentException, SQLException {
-        checkForEmptyString(uuid, "uuid");
-        return getGroupPrefix(getUsersGroupWithHighestLevel(uuid));
+        return getUsersEffectiveGroup(uuid).prefix();
     }
 
     /**
      * Returns the color char - which is equal to the color char of the group with the highest lvl the user is member of
      * @param uuid the user's uuid
      * @return the color char for the given user
-     * @throws IllegalArgumentException if the given uuid is an empty String or the user is not member of any groups
+     * @throws IllegalArgumentException if the given uuid is an empty String or not a valid uuid
      * @throws SQLException if something goes wrong with the database connection
      */
     public char getUserColorChar(String uuid) throws IllegalArgumentException, SQLException {
-        checkForEmptyString(uuid, "uuid");
-        return getGroupColorChar(getUsersGroupWithHighestLevel(uuid));
+        return getUsersEffectiveGroup(uuid).colorChar();
     }
 
     /**
@@ -514,99 +753,179 @@ public class DatabaseManager {
      * @param uuid the user's uuid
      */
     public void updateUser(String uuid) {
-        Runnable updateSignsTask = () -> {
-            try {
-                CommandSign.updateSigns(uuid, getUsersGroupWithHighestLevel(uuid));
-            } catch (SQLException e) {
-                Bukkit.getLogger().warning(e.getMessage());
+        updateUsers(List.of(uuid));
+    }
+
+    /**
+     * Updates the given users' ingame appearance whenever necessary, their effective groups are resolved by one asynchronous task
+     * @param uuids the users' uuids
+     */
+    public void updateUsers(Collection<String> uuids) {
+        for(String uuid : uuids)
+            effectiveGroupCache.invalidate(uuid);
+        if(Bukkit.getServer() == null || uuids.isEmpty())
+            return;
+        Map<String, Long> tickets = new HashMap<>();
+        for(String uuid : uuids) {
+            long ticket = refreshTickets.incrementAndGet();
+            latestRefreshes.put(uuid, ticket);
+            tickets.put(uuid, ticket);
+        }
+        // the effective groups are resolved off the main thread (reloading the cache entries of online players as well),
+        // only the sign updates themselves are handed to the main thread
+        asyncDatabaseManager.supply(() -> {
+            Map<String, EffectiveGroup> groups = new HashMap<>();
+            for(String uuid : tickets.keySet())
+                groups.put(uuid, effectiveGroupCache.get(uuid));
+            return groups;
+        }).whenComplete((groups, exception) -> {
+            Throwable throwable = AsyncDatabaseManager.unwrap(exception);
+            if(throwable != null)
+                Bukkit.getLogger().warning(throwable.getMessage());
+            for(Map.Entry<String, Long> ticket : tickets.entrySet()) {
+                String uuid = ticket.getKey();
+                // a newer refresh of the same user is under way
+                if(!latestRefreshes.remove(uuid, ticket.getValue()) || groups == null)
+                    continue;
+                EffectiveGroup group = groups.get(uuid);
+                // pending refreshes of the same user are merged, mass updates are spread over several ticks
+                refreshQueue.submit(uuid, () -> CommandSign.updateSigns(signRegistry, uuid, group.name()));
             }
-        };
-        if(Bukkit.getServer() != null)
-            Bukkit.getScheduler().runTask(plugin, updateSignsTask);
+        });
     }
 
     /**
-     * Updates the given group's ingame appearance whenever necessary
+     * Updates the given group's ingame appearance whenever necessary.
+     * Only the members whose group is visible (online players and players with signs) are refreshed, all of them in one batch.
+     * The default group has no stored members and counts for every user, so all online players and players with signs are refreshed for it.
      * @param groupName the group's name
+     * @throws SQLException if something goes wrong with the database connection
      */
     public void updateGroup(String groupName) throws SQLException {
-        try{
-            if(!existsGroup(groupName))
-                return;
-        } catch(SQLException e) {
+        ServerGroup serverGroup = groupTable.get(groupName);
+        if(serverGroup == null)
+            return;
+        if(defaultGroupName.equalsIgnoreCase(serverGroup.name())) {
+            // the signs of offline players show the default group as well
+            Set<String> visible = new LinkedHashSet<>(effectiveGroupCache.getTrackedUuids());
+            visible.addAll(signRegistry.getOwners());
+            updateUsers(visible);
             return;
         }
-        List<String> uuids = getGroupsUsers(groupName);
-        for(String uuid : uuids)
-            updateUser(uuid);
+        flushWrites();
+        List<String> affected = new ArrayList<>();
+        for(String uuid : statements.query(Sql.SELECT_GROUPS_USERS, DatabaseManager::readUuids, serverGroup.id())) {
+            if(isVisible(uuid))
+                affected.add(uuid);
+        }
+        updateUsers(affected);
+    }
 
+    /**
+     * Stores a player sign, an existing sign at the same location gets replaced (use {@link SignRegistry#add(String, String, int, int, int)} to keep the registry up to date)
+     * @param uuid the uuid of the player the sign belongs to
+     * @param world the name of the sign's world
+     * @param position the sign's packed coordinates
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    public void addSign(String uuid, String world, long position) throws SQLException {
+        statements.update(Sql.REPLACE_SIGN, world, position, uuid);
+    }
+
+    /**
+     * Removes the player sign at the given location (use {@link SignRegistry#remove(SignLocation)} to keep the registry up to date)
+     * @param world the name of the sign's world
+     * @param position the sign's packed coordinates
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    public void removeSign(String world, long position) throws SQLException {
+        statements.update(Sql.DELETE_SIGN, world, position);
     }
 
     /**
      * Returns the date and time untill the user is no member of the given group anymore
      * @param uuid the user's uuid
      * @param group the group's name
-     * @return the date and time untill the user is no member of the given group anymore
-     * @throws IllegalArgumentException if the given groupname or username is an emty String
+     * @return the date and time untill the user is no member of the given group anymore, {@link LocalDateTime#MAX} for a permanent (or implicit default group) membership, null if the user is no member
+     * @throws IllegalArgumentException if the given groupname or username is an emty String or the uuid is not valid
      * @throws SQLException if something goes wrong with the database connection
      */
     public LocalDateTime groupTimeLeft(String uuid, String group) throws IllegalArgumentException, SQLException {
         checkForEmptyString(uuid, "uuid");
         checkForEmptyString(group, "group");
-        if(!getGroups(uuid).contains(group))
+        ServerGroup serverGroup = groupTable.get(group);
+        if(serverGroup == null)
             return null;
-        try(PreparedStatement statement = connection.prepareStatement("SELECT " + TABLE_USERS_ATTRIBUTE_EXPIRATIONTIME + " FROM " + TABLE_USERS + " WHERE lower(" + TABLE_USERS_ATTRIBUTE_USERGROUP + ") = ? AND " + TABLE_USERS_ATTRIBUTE_USERUUID + " = ?")){
-            statement.setString(1, group.toLowerCase());
-            statement.setString(2, uuid);
-            ResultSet res = statement.executeQuery();
-            res.next();
+        flushWrites(uuid);
+        LocalDateTime timeLeft = statements.query(Sql.SELECT_EXPIRATIONTIME, res -> {
+            // the user is no member of the group
+            if(!res.next())
+                return null;
             Timestamp timestamp = res.getTimestamp(1);
             if(timestamp == null)
                 return LocalDateTime.MAX;
             return timestamp.toLocalDateTime();
-        }
+        }, toBinaryUuid(uuid), serverGroup.id());
+        // users without memberships are implicit members of the default group
+        if(timeLeft == null && serverGroup.id() == getDefaultGroup().id() && !statements.query(Sql.SELECT_HAS_MEMBERSHIPS, ResultSet::next, toBinaryUuid(uuid)))
+            return LocalDateTime.MAX;
+        return timeLeft;
     }
 
     /**
      * Returns a list of all existing groups
-     * @return a list of all existing groups
+     * @return an unmodifiable list of all existing groups in alphabetical order
      * @throws SQLException if something goes wrong with the database connection
      */
     public List<String> getAllGroups() throws SQLException {
-        try(Statement statement = connection.createStatement()){
-            ResultSet res = statement.executeQuery("SELECT " + TABLE_GROUPS_ATTRIBUTE_GROUPNAME + " FROM " + TABLE_GROUPS);
-            List<String> list = new LinkedList<>();
-            while(!res.isClosed() && res.next()) {
-                list.add(res.getString(1));
-            }
-            return list;
-        }
+        return groupTable.getNames();
     }
 
     /**
-     * Returns the name of the group with the highest level that the given user is member of
+     * Returns the group with the given name from the snapshot of the server group table
+     * @param group the group's name
+     * @return the group with the given name
+     * @throws IllegalArgumentException if the given group does not exist or is an empty String
+     */
+    public ServerGroup getServerGroup(String group) throws IllegalArgumentException {
+        checkForEmptyString(group, "group name");
+        ServerGroup serverGroup = groupTable.get(group);
+        if(serverGroup == null)
+            throw new IllegalArgumentException("The given group does not exist");
+        return serverGroup;
+    }
+
+    /**
+     * Returns the name of the group with the highest level that the given user is member of, the default group counts for every user
      * @param uuid the user's uuid
-     * @return the name of the group with the highest level that the given user is member of
-     * @throws IllegalArgumentException if the user is not member of a group or the given uuid is an empty String
+     * @return the name of the group with the highest level that the given user is member of, the default group's name if the user has no memberships or only groups with lower levels
+     * @throws IllegalArgumentException if the given uuid is an empty String or not a valid uuid
      * @throws SQLException if something goes wrong with the database connection
      */
     public String getUsersGroupWithHighestLevel(String uuid) throws IllegalArgumentException, SQLException {
-        List<String> groups = getGroups(uuid);
-        if(groups.isEmpty())
-            throw new IllegalArgumentException("The given user is not member of a group!");
-        // get the highest group level:
-        int level = Integer.MIN_VALUE;
-        for(String g : groups) {
-            int glvl = getGroupLevel(g);
-            if(glvl > level)
-                level = glvl;
-        }
-        // pick the first group with that level:
-        for(String g : groups) {
-            if(getGroupLevel(g) == level)
-                return g;
-        }
-        throw new IllegalStateException("Something went wrong while fetching the group with the highest level for user " + uuid + "!");
+        return getUsersEffectiveGroup(uuid).name();
+    }
+
+    /**
+     * Returns name, prefix, color char and level of the group with the highest level that the given user is member of.
+     * If several groups share the highest level the alphabetically first group name wins, users without memberships get the default group.
+     * The default group is a candidate for every user (every player used to get a stored default membership on join), so its level is the lowest level a user is shown with.
+     * @param uuid the user's uuid
+     * @return the group with the highest level that the given user is member of
+     * @throws IllegalArgumentException if the given uuid is an empty String or not a valid uuid
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    public EffectiveGroup getUsersEffectiveGroup(String uuid) throws IllegalArgumentException, SQLException {
+        checkForEmptyString(uuid, "uuid");
+        flushWrites(uuid);
+        ServerGroup defaultGroup = getDefaultGroup();
+        return statements.query(Sql.SELECT_EFFECTIVE_GROUP, res -> {
+            // users without memberships are implicit members of the default group, the others only get it if it outranks their groups
+            if(!res.next() || outranks(defaultGroup, res.getString(1), res.getInt(4)))
+                return new EffectiveGroup(defaultGroup.name(), defaultGroup.prefix(), defaultGroup.colorChar(), defaultGroup.level());
+            // colorCode -> char
+            return new EffectiveGroup(res.getString(1), res.getString(2), Character.forDigit(res.getInt(3), 16), res.getInt(4));
+        }, toBinaryUuid(uuid));
     }
 
     // HELPER
@@ -615,15 +934,161 @@ public class DatabaseManager {
      * Checks whether the given groupname exists or not
      * @param groupname the given groupname
      * @return true if the given groupname does exist - false if the given groupname does not exist
+     */
+    private boolean existsGroup(String groupname) {
+        return groupTable.contains(groupname);
+    }
+
+    /**
+     * Rejects the default group, its membership is implicit and can not be added or removed
+     * @param group the group's name
+     * @throws IllegalArgumentException if the given group is the default group
+     */
+    private void checkForDefaultGroup(String group) throws IllegalArgumentException {
+        if(defaultGroupName.equalsIgnoreCase(group))
+            throw new IllegalArgumentException("The default group's membership is implicit!");
+    }
+
+    /**
+     * Checks whether the given group is chosen over the other given group as a user's group with the highest level
+     * @param group the group
+     * @param otherName the other group's name
+     * @param otherLevel the other group's level
+     * @return true if the given group has a higher level or the same level and an alphabetically lower name - false otherwise
+     */
+    private static boolean outranks(ServerGroup group, String otherName, int otherLevel) {
+        if(group.level() != otherLevel)
+            return group.level() > otherLevel;
+        return group.name().compareToIgnoreCase(otherName) < 0;
+    }
+
+    /**
+     * Returns the default group from the snapshot of the server group table
+     * @return the default group
+     */
+    private ServerGroup getDefaultGroup() {
+        return groupTable.get(defaultGroupName);
+    }
+
+    /**
+     * Checks whether the given user's group is visible anywhere (the user is online or has signs), only those users need to be refreshed
+     * @param uuid the user's uuid
+     * @return true if the user's group is visible - false if it is not
+     */
+    private boolean isVisible(String uuid) {
+        return effectiveGroupCache.isTracked(uuid) || signRegistry.hasSigns(uuid);
+    }
+
+    /**
+     * Adds the given user to the given group with a single statement, the database reports existing memberships and deleted groups
+     * @param uuid the user's uuid
+     * @param groupId the group's id
+     * @param expirationTime the time the membership expires at or null if it never expires
+     * @throws IllegalArgumentException if the user is already member of the group or the group does not exist anymore
      * @throws SQLException if something goes wrong with the database connection
      */
-    private boolean existsGroup(String groupname) throws SQLException {
-        try(Statement statement = connection.createStatement()) {
-            ResultSet res = statement.executeQuery("SELECT " + TABLE_GROUPS_ATTRIBUTE_GROUPNAME + " FROM " + TABLE_GROUPS + " WHERE lower(" + TABLE_GROUPS_ATTRIBUTE_GROUPNAME + ") = '" + groupname.toLowerCase() + "'");
-            return res.isBeforeFirst();
+    private void insertMembership(String uuid, int groupId, Timestamp expirationTime) throws IllegalArgumentException, SQLException {
+        try {
+            statements.update(Sql.INSERT_MEMBERSHIP, toBinaryUuid(uuid), groupId, expirationTime);
+        } catch (SQLException e) {
+            if(e.getErrorCode() == ERROR_DUPLICATE_KEY)
+                throw new IllegalArgumentException("The given user is already member of the given group!");
+            if(e.getErrorCode() == ERROR_MISSING_REFERENCE)
+                throw new IllegalArgumentException("The given group does not exist!");
+            throw e;
         }
     }
 
+    /**
+     * Checks whether the given membership is stored in the database, ignoring queued changes (called by {@link DatabaseManager#writeQueue})
+     * @param uuid the user's uuid
+     * @param groupId the group's id
+     * @return true if the membership is stored - false if it is not
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    private boolean isStoredMember(String uuid, int groupId) throws SQLException {
+        return statements.query(Sql.SELECT_EXPIRATIONTIME, ResultSet::next, toBinaryUuid(uuid), groupId);
+    }
+
+    /**
+     * Writes the queued membership changes in one transaction (called by {@link DatabaseManager#writeQueue}) and updates every affected user once.
+     * If a group was deleted meanwhile the changes are written one by one and the changes of deleted groups are dropped.
+     * @param writes the changes, at most one per membership
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    private void writeMemberships(List<MembershipWriteQueue.Write> writes) throws SQLException {
+        List<Object[]> upserts = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        for(MembershipWriteQueue.Write write : writes) {
+            Membership membership = write.membership();
+            if(write.add())
+                upserts.add(new Object[]{toBinaryUuid(membership.uuid()), membership.groupId(), write.expirationTime(), write.expirationTime()});
+            else
+                deletes.add(new Object[]{toBinaryUuid(membership.uuid()), membership.groupId()});
+        }
+        try {
+            statements.transaction(session -> {
+                if(!upserts.isEmpty())
+                    session.batch(Sql.UPSERT_MEMBERSHIP, upserts);
+                if(!deletes.isEmpty())
+                    session.batch(Sql.DELETE_MEMBERSHIP, deletes);
+                return null;
+            });
+        } catch (SQLException e) {
+            if(e.getErrorCode() != ERROR_MISSING_REFERENCE)
+                throw e;
+            for(Object[] upsert : upserts) {
+                try {
+                    statements.update(Sql.UPSERT_MEMBERSHIP, upsert);
+                } catch (SQLException exception) {
+                    if(exception.getErrorCode() != ERROR_MISSING_REFERENCE)
+                        throw exception;
+                    if(Bukkit.getServer() != null)
+                        Bukkit.getLogger().warning("Dropped the queued membership of " + fromBinaryUuid((byte[]) upsert[0]) + " in the deleted group " + upsert[1]);
+                }
+            }
+            for(Object[] delete : deletes)
+                statements.update(Sql.DELETE_MEMBERSHIP, delete);
+        }
+        Set<String> uuids = new LinkedHashSet<>();
+        for(MembershipWriteQueue.Write write : writes)
+            uuids.add(write.membership().uuid());
+        updateUsers(uuids);
+    }
+
+    /**
+     * Writes the queued membership changes, so the following reads see them
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    private void flushWrites() throws SQLException {
+        if(writeQueue != null)
+            writeQueue.flush();
+    }
+
+    /**
+     * Writes the queued membership changes if the given user has some, so the following reads of the user see them
+     * @param uuid the user's uuid
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    private void flushWrites(String uuid) throws SQLException {
+        if(writeQueue != null)
+            writeQueue.flush(uuid);
+    }
+
+    /**
+     * Loads the server group table and replaces {@link DatabaseManager#groupTable} with the new snapshot
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    private synchronized void reloadGroupTable() throws SQLException {
+        groupTable = statements.query(Sql.SELECT_GROUPS, res -> {
+            List<ServerGroup> groups = new ArrayList<>();
+            while(res.next()) {
+                groups.add(new ServerGroup(res.getInt(1), res.getString(2), res.getString(3), res.getInt(4), res.getInt(5)));
+            }
+            return new GroupTable(groups);
+        });
+    }
+
     /**
      * Checks whether the given text is empty
      * @param text the given text
@@ -635,39 +1100,214 @@ public class DatabaseManager {
     }
 
     /**
-     * Schedules all group membership expirations
+     * Converts the given uuid into the 16 bytes it is stored as, most significant bits first (the layout of MySQL's UUID_TO_BIN without swapping)
+     * @param uuid the uuid in its 36 character form
+     * @return the uuid's 16 bytes
+     * @throws IllegalArgumentException if the given uuid is not a valid uuid
      */
-    private void scheduleExpirations() throws SQLException {
-        try(PreparedStatement statement = connection.prepareStatement("SELECT " + TABLE_USERS_ATTRIBUTE_USERUUID + "," + TABLE_USERS_ATTRIBUTE_EXPIRATIONTIME + " FROM " + TABLE_USERS + " WHERE " + TABLE_USERS_ATTRIBUTE_EXPIRATIONTIME + " IS NOT NULL")){
-            ResultSet res = statement.executeQuery();
-            while(!res.isClosed() && res.next()) {
-                String uuid = res.getString(1);
-                Timestamp timestamp = res.getTimestamp(2);
-                scheduleExpiration(uuid, timestamp);
-            }
+    private static byte[] toBinaryUuid(String uuid) throws IllegalArgumentException {
+        // UUID.fromString also accepts shortened forms (e.g. "1-2-3-4-5"), which are not valid player uuids
+        if(uuid.length() != 36)
+            throw new IllegalArgumentException("The given uuid is not valid!");
+        UUID parsed;
+        try {
+            parsed = UUID.fromString(uuid);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("The given uuid is not valid!");
         }
+        return ByteBuffer.allocate(16).putLong(parsed.getMostSignificantBits()).putLong(parsed.getLeastSignificantBits()).array();
+    }
+
+    /**
+     * Converts the given 16 stored bytes back into a uuid
+     * @param uuid the uuid's 16 bytes
+     * @return the uuid in its 36 character form
+     */
+    private static String fromBinaryUuid(byte[] uuid) {
+        ByteBuffer buffer = ByteBuffer.wrap(uuid);
+        return new UUID(buffer.getLong(), buffer.getLong()).toString();
     }
 
     /**
-     * Removes user's whose group membership expires at the given time
-     * @param timestamp the given time
+     * Reads the binary uuids of the first column of all rows of the given result
+     * @param res the result
+     * @return a list of the uuids in their 36 character form
+     * @throws SQLException if something goes wrong with the database connection
      */
-    @SuppressWarnings({"deprecation", "MagicConstant"})
-    private void scheduleExpiration(String uuid, Timestamp timestamp) {
-        TimerTask deleteFromGroup = new TimerTask() {
-            @Override
-            public void run() {
-                try(PreparedStatement statement = connection.prepareStatement("DELETE FROM " + TABLE_USERS + " WHERE " + TABLE_USERS_ATTRIBUTE_EXPIRATIONTIME + " = ?")){
-                    statement.setTimestamp(1, timestamp);
-                    statement.executeUpdate();
-                } catch (Exception e) {
-                    Bukkit.getLogger().warning(e.getMessage());
+    private static List<String> readUuids(ResultSet res) throws SQLException {
+        List<String> list = new ArrayList<>();
+        while(res.next()) {
+            list.add(fromBinaryUuid(res.getBytes(1)));
+        }
+        return list;
+    }
+
+    /**
+     * Reads the first column of all rows of the given result
+     * @param res the result
+     * @return a list of the first column's values
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    private static List<String> readStrings(ResultSet res) throws SQLException {
+        List<String> list = new LinkedList<>();
+        while(res.next()) {
+            list.add(res.getString(1));
+        }
+        return list;
+    }
+
+    /**
+     * Adds all stored player signs to the {@link DatabaseManager#signRegistry}
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    private void loadSigns() throws SQLException {
+        statements.query(Sql.SELECT_SIGNS, res -> {
+            while(res.next())
+                signRegistry.register(res.getString(1), res.getString(2), res.getLong(3));
+            return null;
+        });
+    }
+
+    /**
+     * Removes all memberships that expired before the given time in one pass and updates the affected users
+     * @param until the time in milliseconds since the epoch
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    private void catchUpExpirations(long until) throws SQLException {
+        Timestamp timestamp = new Timestamp(until);
+        List<String> uuids = new ArrayList<>();
+        int removed = statements.transaction(session -> {
+            uuids.addAll(session.query(Sql.SELECT_EXPIRED_USERS, DatabaseManager::readUuids, timestamp));
+            return session.update(Sql.DELETE_EXPIRED_MEMBERSHIPS, timestamp);
+        });
+        updateUsers(uuids);
+        if(removed > 0 && Bukkit.getServer() != null)
+            Bukkit.getLogger().info("Removed " + removed + " memberships of " + uuids.size() + " users that expired while the server was down");
+    }
+
+    /**
+     * Schedules the group membership expirations between {@link DatabaseManager#expirationsLoadedUntil} and the end of the horizon
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    private synchronized void loadExpirations() throws SQLException {
+        long from = expirationsLoadedUntil;
+        long until = System.currentTimeMillis() + settings.getExpirationHorizon();
+        if(until <= from)
+            return;
+        // moved before reading, so memberships added meanwhile are either read here or scheduled by addUserToGroup
+        expirationsLoadedUntil = until;
+        try {
+            statements.query(Sql.SELECT_EXPIRATIONS, res -> {
+                while(res.next()) {
+                    expirations.schedule(new Membership(fromBinaryUuid(res.getBytes(1)), res.getInt(2)), res.getTimestamp(3).getTime());
                 }
-                updateUser(uuid);
+                return null;
+            }, new Timestamp(from), new Timestamp(until));
+        } catch (SQLException e) {
+            // the window is read again by the next run
+            expirationsLoadedUntil = from;
+            throw e;
+        }
+    }
+
+    /**
+     * Loads the expirations entering the horizon (called by {@link DatabaseManager#expirationPager})
+     */
+    private void pageExpirations() {
+        try {
+            loadExpirations();
+        } catch (SQLException e) {
+            if(Bukkit.getServer() != null)
+                Bukkit.getLogger().warning("Loading the next expirations failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Removes the users from the groups whose memberships expired in one batch and updates every affected user once (called by {@link DatabaseManager#expirations}).
+     * If removing them fails they are scheduled again, the delete only removes memberships that are still expired, so a renewal in between is kept.
+     * @param memberships the expired memberships
+     */
+    private void expireMemberships(List<Membership> memberships) {
+        long start = System.nanoTime();
+        int removed = 0;
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Object[]> rows = new ArrayList<>(memberships.size());
+        for(Membership membership : memberships)
+            rows.add(new Object[]{toBinaryUuid(membership.uuid()), membership.groupId(), now});
+        try {
+            // a queued change could renew or remove an expiring membership
+            flushWrites();
+            for(int count : statements.transaction(session -> session.batch(Sql.DELETE_EXPIRED_MEMBERSHIP, rows)))
+                removed += Math.max(count, 0);
+        } catch (SQLException e) {
+            if(Bukkit.getServer() != null)
+                Bukkit.getLogger().warning("Removing " + memberships.size() + " expired memberships failed, retrying in " + EXPIRATION_RETRY_DELAY + "ms: " + e.getMessage());
+            long retry = System.currentTimeMillis() + EXPIRATION_RETRY_DELAY;
+            for(Membership membership : memberships) {
+                // a membership renewed meanwhile keeps its new expiration
+                if(!expirations.isScheduled(membership))
+                    expirations.schedule(membership, retry);
             }
-        };
-        LocalDateTime time = timestamp.toLocalDateTime();
-        Date date = new Date(time.getYear()-1900, time.getMonthValue()-1, time.getDayOfMonth(), time.getHour(), time.getMinute(), time.getSecond());
-        timer.schedule(deleteFromGroup, date);
+            return;
+        }
+        Set<String> uuids = new LinkedHashSet<>();
+        for(Membership membership : memberships)
+            uuids.add(membership.uuid());
+        updateUsers(uuids);
+        if(Bukkit.getServer() != null)
+            Bukkit.getLogger().info("Removed " + removed + " expired memberships of " + uuids.size() + " users in " + (System.nanoTime() - start) / 1000000 + "ms");
+    }
+
+    /**
+     * The statements this class executes, every value is bound as parameter and never concatenated into the SQL
+     */
+    private enum Sql implements NamedStatement {
+        SELECT_GROUPS("SELECT " + TABLE_GROUPS_ATTRIBUTE_GROUPID + ", " + TABLE_GROUPS_ATTRIBUTE_GROUPNAME + ", " + TABLE_GROUPS_ATTRIBUTE_GROUPPREFIX + ", " + TABLE_GROUPS_ATTRIBUTE_GROUPLEVEL + ", " + TABLE_GROUPS_ATTRIBUTE_GROUPCOLORCODE + " FROM " + TABLE_GROUPS),
+        INSERT_GROUP("INSERT INTO " + TABLE_GROUPS + "(" + TABLE_GROUPS_ATTRIBUTE_GROUPNAME + ", " + TABLE_GROUPS_ATTRIBUTE_GROUPPREFIX + ", " + TABLE_GROUPS_ATTRIBUTE_GROUPLEVEL + ", " + TABLE_GROUPS_ATTRIBUTE_GROUPCOLORCODE + ") VALUES(?, ?, ?, ?)"),
+        RENAME_GROUP("UPDATE " + TABLE_GROUPS + " SET " + TABLE_GROUPS_ATTRIBUTE_GROUPNAME + " = ? WHERE " + TABLE_GROUPS_ATTRIBUTE_GROUPID + " = ?"),
+        UPDATE_GROUP_PREFIX("UPDATE " + TABLE_GROUPS + " SET " + TABLE_GROUPS_ATTRIBUTE_GROUPPREFIX + " = ? WHERE " + TABLE_GROUPS_ATTRIBUTE_GROUPID + " = ?"),
+        UPDATE_GROUP_COLORCODE("UPDATE " + TABLE_GROUPS + " SET " + TABLE_GROUPS_ATTRIBUTE_GROUPCOLORCODE + " = ? WHERE " + TABLE_GROUPS_ATTRIBUTE_GROUPID + " = ?"),
+        UPDATE_GROUP_LEVEL("UPDATE " + TABLE_GROUPS + " SET " + TABLE_GROUPS_ATTRIBUTE_GROUPLEVEL + " = ? WHERE " + TABLE_GROUPS_ATTRIBUTE_GROUPID + " = ?"),
+        DELETE_GROUP("DELETE FROM " + TABLE_GROUPS + " WHERE " + TABLE_GROUPS_ATTRIBUTE_GROUPID + " = ?"),
+        SELECT_GROUPS_USERS("SELECT " + TABLE_USERS_ATTRIBUTE_USERUUID + " FROM " + TABLE_USERS + " WHERE " + TABLE_USERS_ATTRIBUTE_GROUPID + " = ?"),
+        LOCK_GROUPS_USERS("SELECT " + TABLE_USERS_ATTRIBUTE_USERUUID + " FROM " + TABLE_USERS + " WHERE " + TABLE_USERS_ATTRIBUTE_GROUPID + " = ? FOR UPDATE"),
+        SELECT_MEMBERS("SELECT DISTINCT " + TABLE_USERS_ATTRIBUTE_USERUUID + " FROM " + TABLE_USERS),
+        DELETE_GROUP_MEMBERSHIPS("DELETE FROM " + TABLE_USERS + " WHERE " + TABLE_USERS_ATTRIBUTE_GROUPID + " = ?"),
+        SELECT_USERS_GROUPS("SELECT g." + TABLE_GROUPS_ATTRIBUTE_GROUPNAME + " FROM " + TABLE_USERS + " u JOIN " + TABLE_GROUPS + " g ON g." + TABLE_GROUPS_ATTRIBUTE_GROUPID + " = u." + TABLE_USERS_ATTRIBUTE_GROUPID + " WHERE u." + TABLE_USERS_ATTRIBUTE_USERUUID + " = ?"),
+        SELECT_EFFECTIVE_GROUP("SELECT g." + TABLE_GROUPS_ATTRIBUTE_GROUPNAME + ", g." + TABLE_GROUPS_ATTRIBUTE_GROUPPREFIX + ", g." + TABLE_GROUPS_ATTRIBUTE_GROUPCOLORCODE + ", g." + TABLE_GROUPS_ATTRIBUTE_GROUPLEVEL + " FROM " + TABLE_USERS + " u JOIN " + TABLE_GROUPS + " g ON g." + TABLE_GROUPS_ATTRIBUTE_GROUPID + " = u." + TABLE_USERS_ATTRIBUTE_GROUPID + " WHERE u." + TABLE_USERS_ATTRIBUTE_USERUUID + " = ? ORDER BY g." + TABLE_GROUPS_ATTRIBUTE_GROUPLEVEL + " DESC, g." + TABLE_GROUPS_ATTRIBUTE_GROUPNAME + " ASC LIMIT 1"),
+        INSERT_MEMBERSHIP("INSERT INTO " + TABLE_USERS + "(" + TABLE_USERS_ATTRIBUTE_USERUUID + ", " + TABLE_USERS_ATTRIBUTE_GROUPID + ", " + TABLE_USERS_ATTRIBUTE_EXPIRATIONTIME + ") VALUES(?, ?, ?)"),
+        UPSERT_MEMBERSHIP("INSERT INTO " + TABLE_USERS + "(" + TABLE_USERS_ATTRIBUTE_USERUUID + ", " + TABLE_USERS_ATTRIBUTE_GROUPID + ", " + TABLE_USERS_ATTRIBUTE_EXPIRATIONTIME + ") VALUES(?, ?, ?) ON DUPLICATE KEY UPDATE " + TABLE_USERS_ATTRIBUTE_EXPIRATIONTIME + " = ?"),
+        DELETE_MEMBERSHIP("DELETE FROM " + TABLE_USERS + " WHERE " + TABLE_USERS_ATTRIBUTE_USERUUID + " = ? AND " + TABLE_USERS_ATTRIBUTE_GROUPID + " = ?"),
+        SELECT_HAS_MEMBERSHIPS("SELECT 1 FROM " + TABLE_USERS + " WHERE " + TABLE_USERS_ATTRIBUTE_USERUUID + " = ? LIMIT 1"),
+        SELECT_EXPIRATIONTIME("SELECT " + TABLE_USERS_ATTRIBUTE_EXPIRATIONTIME + " FROM " + TABLE_USERS + " WHERE " + TABLE_USERS_ATTRIBUTE_USERUUID + " = ? AND " + TABLE_USERS_ATTRIBUTE_GROUPID + " = ?"),
+        SELECT_EXPIRED_USERS("SELECT DISTINCT " + TABLE_USERS_ATTRIBUTE_USERUUID + " FROM " + TABLE_USERS + " WHERE " + TABLE_USERS_ATTRIBUTE_EXPIRATIONTIME + " <= ?"),
+        DELETE_EXPIRED_MEMBERSHIPS("DELETE FROM " + TABLE_USERS + " WHERE " + TABLE_USERS_ATTRIBUTE_EXPIRATIONTIME + " <= ?"),
+        DELETE_EXPIRED_MEMBERSHIP("DELETE FROM " + TABLE_USERS + " WHERE " + TABLE_USERS_ATTRIBUTE_USERUUID + " = ? AND " + TABLE_USERS_ATTRIBUTE_GROUPID + " = ? AND " + TABLE_USERS_ATTRIBUTE_EXPIRATIONTIME + " <= ?"),
+        SELECT_EXPIRATIONS("SELECT " + TABLE_USERS_ATTRIBUTE_USERUUID + "," + TABLE_USERS_ATTRIBUTE_GROUPID + "," + TABLE_USERS_ATTRIBUTE_EXPIRATIONTIME + " FROM " + TABLE_USERS + " WHERE " + TABLE_USERS_ATTRIBUTE_EXPIRATIONTIME + " > ? AND " + TABLE_USERS_ATTRIBUTE_EXPIRATIONTIME + " <= ?"),
+        SELECT_SIGNS("SELECT " + TABLE_SIGNS_ATTRIBUTE_USERUUID + "," + TABLE_SIGNS_ATTRIBUTE_WORLD + "," + TABLE_SIGNS_ATTRIBUTE_POSITION + " FROM " + TABLE_SIGNS),
+        REPLACE_SIGN("REPLACE INTO " + TABLE_SIGNS + "(" + TABLE_SIGNS_ATTRIBUTE_WORLD + ", " + TABLE_SIGNS_ATTRIBUTE_POSITION + ", " + TABLE_SIGNS_ATTRIBUTE_USERUUID + ") VALUES(?, ?, ?)"),
+        DELETE_SIGN("DELETE FROM " + TABLE_SIGNS + " WHERE " + TABLE_SIGNS_ATTRIBUTE_WORLD + " = ? AND " + TABLE_SIGNS_ATTRIBUTE_POSITION + " = ?");
+
+        /**
+         * The statement's SQL
+         */
+        private final String sql;
+
+        /**
+         * Initialises the statement with the given SQL
+         * @param sql the statement's SQL
+         */
+        Sql(String sql) {
+            this.sql = sql;
+        }
+
+        /**
+         * Returns the statement's SQL
+         * @return the statement's SQL
+         */
+        @Override
+        public String sql() {
+            return sql;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,237 @@
+package com.schnatz.groupplugin;
+
+import org.bukkit.configuration.file.FileConfiguration;
+
+/**
+ * This class bundles the tuning parameters of the {@link DatabaseManager}
+ * @author Henry Schnatz
+ */
+public class DatabaseSettings {
+    /**
+     * The maximum number of connections held by the connection pool
+     */
+    private final int poolSize;
+    /**
+     * The time in milliseconds a thread waits for a free connection before giving up
+     */
+    private final long poolConnectionTimeout;
+    /**
+     * The time in milliseconds after which an unused connection gets closed
+     */
+    private final long poolIdleTimeout;
+    /**
+     * The time in milliseconds a connection may be borrowed before it is reported as possible leak (0 disables the detection)
+     */
+    private final long poolLeakDetectionThreshold;
+    /**
+     * The number of threads running asynchronous database operations
+     */
+    private final int executorThreads;
+    /**
+     * Whether asynchronous database operations should run on virtual threads (needs Java 21)
+     */
+    private final boolean executorVirtualThreads;
+    /**
+     * The time in milliseconds membership expirations are loaded into memory ahead of time
+     */
+    private final long expirationHorizon;
+    /**
+     * The time in microseconds per tick the main thread may spend refreshing users (e.g. their signs)
+     */
+    private final long refreshTickBudget;
+    /**
+     * The number of rows the schema migration converts per transaction
+     */
+    private final int migrationChunkSize;
+    /**
+     * Whether membership changes are queued and written in batches instead of being written immediately
+     */
+    private final boolean writeBehind;
+    /**
+     * The maximum number of queued membership changes
+     */
+    private final int writeBehindCapacity;
+    /**
+     * The number of queued membership changes that triggers writing them
+     */
+    private final int writeBehindBatchSize;
+    /**
+     * The time in milliseconds after which queued membership changes are written
+     */
+    private final long writeBehindInterval;
+
+    /**
+     * Initialises all settings with their default values
+     */
+    public DatabaseSettings() {
+        this.poolSize = 10;
+        this.poolConnectionTimeout = 5000;
+        this.poolIdleTimeout = 600000;
+        this.poolLeakDetectionThreshold = 10000;
+        this.executorThreads = 4;
+        this.executorVirtualThreads = false;
+        this.expirationHorizon = 3600000;
+        this.refreshTickBudget = 2000;
+        this.migrationChunkSize = 1000;
+        this.writeBehind = false;
+        this.writeBehindCapacity = 10000;
+        this.writeBehindBatchSize = 500;
+        this.writeBehindInterval = 1000;
+    }
+
+    /**
+     * Initialises all settings with the values of the given config
+     * @param config the plugin's config
+     * @throws IllegalStateException if the config is missing one of the needed values
+     */
+    public DatabaseSettings(FileConfiguration config) throws IllegalStateException {
+        if(!(config.isInt("DatabasePoolSize")
+                && config.isInt("DatabasePoolConnectionTimeout")
+                && config.isInt("DatabasePoolIdleTimeout")
+                && config.isInt("DatabasePoolLeakDetectionThreshold")
+                && config.isInt("DatabaseExecutorThreads")
+                && config.isBoolean("DatabaseExecutorVirtualThreads")
+                && config.isInt("DatabaseExpirationHorizon")
+                && config.isInt("DatabaseRefreshTickBudget")
+                && config.isInt("DatabaseMigrationChunkSize")
+                && config.isBoolean("DatabaseWriteBehind")
+                && config.isInt("DatabaseWriteBehindCapacity")
+                && config.isInt("DatabaseWriteBehindBatchSize")
+                && config.isInt("DatabaseWriteBehindInterval")))
+            throw new IllegalStateException();
+        if(config.getInt("DatabasePoolSize") < 1)
+            throw new IllegalStateException("DatabasePoolSize must be at least 1!");
+        if(config.getInt("DatabaseExecutorThreads") < 1)
+            throw new IllegalStateException("DatabaseExecutorThreads must be at least 1!");
+        if(config.getInt("DatabaseExpirationHorizon") < 1000)
+            throw new IllegalStateException("DatabaseExpirationHorizon must be at least 1000!");
+        if(config.getInt("DatabaseRefreshTickBudget") < 0)
+            throw new IllegalStateException("DatabaseRefreshTickBudget must not be negative!");
+        if(config.getInt("DatabaseMigrationChunkSize") < 1)
+            throw new IllegalStateException("DatabaseMigrationChunkSize must be at least 1!");
+        if(config.getInt("DatabaseWriteBehindBatchSize") < 1)
+            throw new IllegalStateException("DatabaseWriteBehindBatchSize must be at least 1!");
+        if(config.getInt("DatabaseWriteBehindCapacity") < config.getInt("DatabaseWriteBehindBatchSize"))
+            throw new IllegalStateException("DatabaseWriteBehindCapacity must be at least DatabaseWriteBehindBatchSize!");
+        if(config.getInt("DatabaseWriteBehindInterval") < 1)
+            throw new IllegalStateException("DatabaseWriteBehindInterval must be at least 1!");
+
+        this.poolSize = config.getInt("DatabasePoolSize");
+        this.poolConnectionTimeout = config.getInt("DatabasePoolConnectionTimeout");
+        this.poolIdleTimeout = config.getInt("DatabasePoolIdleTimeout");
+        this.poolLeakDetectionThreshold = config.getInt("DatabasePoolLeakDetectionThreshold");
+        this.executorThreads = config.getInt("DatabaseExecutorThreads");
+        this.executorVirtualThreads = config.getBoolean("DatabaseExecutorVirtualThreads");
+        this.expirationHorizon = config.getInt("DatabaseExpirationHorizon");
+        this.refreshTickBudget = config.getInt("DatabaseRefreshTickBudget");
+        this.migrationChunkSize = config.getInt("DatabaseMigrationChunkSize");
+        this.writeBehind = config.getBoolean("DatabaseWriteBehind");
+        this.writeBehindCapacity = config.getInt("DatabaseWriteBehindCapacity");
+        this.writeBehindBatchSize = config.getInt("DatabaseWriteBehindBatchSize");
+        this.writeBehindInterval = config.getInt("DatabaseWriteBehindInterval");
+    }
+
+    /**
+     * Returns the maximum number of connections held by the connection pool
+     * @return the maximum number of connections held by the connection pool
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Returns the time in milliseconds a thread waits for a free connection
+     * @return the time in milliseconds a thread waits for a free connection
+     */
+    public long getPoolConnectionTimeout() {
+        return poolConnectionTimeout;
+    }
+
+    /**
+     * Returns the time in milliseconds after which an unused connection gets closed
+     * @return the time in milliseconds after which an unused connection gets closed
+     */
+    public long getPoolIdleTimeout() {
+        return poolIdleTimeout;
+    }
+
+    /**
+     * Returns the time in milliseconds a connection may be borrowed before it is reported as possible leak
+     * @return the time in milliseconds a connection may be borrowed before it is reported as possible leak
+     */
+    public long getPoolLeakDetectionThreshold() {
+        return poolLeakDetectionThreshold;
+    }
+
+    /**
+     * Returns the number of threads running asynchronous database operations
+     * @return the number of threads running asynchronous database operations
+     */
+    public int getExecutorThreads() {
+        return executorThreads;
+    }
+
+    /**
+     * Returns whether asynchronous database operations should run on virtual threads
+     * @return whether asynchronous database operations should run on virtual threads
+     */
+    public boolean isExecutorVirtualThreads() {
+        return executorVirtualThreads;
+    }
+
+    /**
+     * Returns the time in milliseconds membership expirations are loaded into memory ahead of time
+     * @return the time in milliseconds membership expirations are loaded into memory ahead of time
+     */
+    public long getExpirationHorizon() {
+        return expirationHorizon;
+    }
+
+    /**
+     * Returns the time in microseconds per tick the main thread may spend refreshing users
+     * @return the time in microseconds per tick the main thread may spend refreshing users
+     */
+    public long getRefreshTickBudget() {
+        return refreshTickBudget;
+    }
+
+    /**
+     * Returns the number of rows the schema migration converts per transaction
+     * @return the number of rows the schema migration converts per transaction
+     */
+    public int getMigrationChunkSize() {
+        return migrationChunkSize;
+    }
+
+    /**
+     * Returns whether membership changes are queued and written in batches
+     * @return whether membership changes are queued and written in batches
+     */
+    public boolean isWriteBehind() {
+        return writeBehind;
+    }
+
+    /**
+     * Returns the maximum number of queued membership changes
+     * @return the maximum number of queued membership changes
+     */
+    public int getWriteBehindCapacity() {
+        return writeBehindCapacity;
+    }
+
+    /**
+     * Returns the number of queued membership changes that triggers writing them
+     * @return the number of queued membership changes that triggers writing them
+     */
+    public int getWriteBehindBatchSize() {
+        return writeBehindBatchSize;
+    }
+
+    /**
+     * Returns the time in milliseconds after which queued membership changes are written
+     * @return the time in milliseconds after which queued membership changes are written
+     */
+    public long getWriteBehindInterval() {
+        return writeBehindInterval;
+    }
+}
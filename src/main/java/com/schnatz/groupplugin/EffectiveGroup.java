@@ -0,0 +1,12 @@
+package com.schnatz.groupplugin;
+
+/**
+ * The group that determines a user's appearance - the one with the highest level the user is member of
+ * @param name the group's name
+ * @param prefix the group's prefix
+ * @param colorChar the group's color char
+ * @param level the group's level
+ * @author Henry Schnatz
+ */
+public record EffectiveGroup(String name, String prefix, char colorChar, int level) {
+}
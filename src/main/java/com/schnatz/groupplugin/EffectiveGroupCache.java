@@ -0,0 +1,154 @@
+package com.schnatz.groupplugin;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class caches the {@link EffectiveGroup} of every online player, so chat messages do not need the database.
+ * Entries are only kept for tracked (online) players and get invalidated whenever the player's groups change.
+ * @author Henry Schnatz
+ */
+public class EffectiveGroupCache {
+    /**
+     * The database manager used to load missing entries
+     */
+    private final DatabaseManager databaseManager;
+    /**
+     * A map mapping the uuids of the tracked players on their entries
+     */
+    private final Map<String, Entry> entries;
+    /**
+     * Hands out the versions of the entries, every version is used once so an entry never gets back an earlier version
+     */
+    private final AtomicLong versions;
+    /**
+     * The number of lookups answered from the cache
+     */
+    private final LongAdder hits;
+    /**
+     * The number of lookups that needed the database
+     */
+    private final LongAdder misses;
+
+    /**
+     * Initialises an empty cache
+     * @param databaseManager the database manager used to load missing entries
+     */
+    public EffectiveGroupCache(DatabaseManager databaseManager) {
+        this.databaseManager = databaseManager;
+        this.entries = new ConcurrentHashMap<>();
+        this.versions = new AtomicLong();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+    }
+
+    /**
+     * Starts caching the given player's effective group and loads it (should be called off the main thread, e.g. on login)
+     * @param uuid the player's uuid
+     * @throws IllegalArgumentException if the given uuid is an empty String
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    public void track(String uuid) throws IllegalArgumentException, SQLException {
+        entries.computeIfAbsent(uuid, key -> new Entry(versions.incrementAndGet(), null));
+        get(uuid);
+    }
+
+    /**
+     * Stops caching the given player's effective group (e.g. when the player quits)
+     * @param uuid the player's uuid
+     */
+    public void evict(String uuid) {
+        entries.remove(uuid);
+    }
+
+    /**
+     * Checks whether the given player's effective group is cached (the player is online)
+     * @param uuid the player's uuid
+     * @return true if the player is tracked - false if the player is not
+     */
+    public boolean isTracked(String uuid) {
+        return entries.containsKey(uuid);
+    }
+
+    /**
+     * Returns the uuids of the tracked (online) players
+     * @return the uuids of the tracked players (a copy)
+     */
+    public List<String> getTrackedUuids() {
+        return List.copyOf(entries.keySet());
+    }
+
+    /**
+     * Returns the given user's effective group, from the cache if possible
+     * @param uuid the user's uuid
+     * @return the given user's effective group
+     * @throws IllegalArgumentException if the given uuid is an empty String
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    public EffectiveGroup get(String uuid) throws IllegalArgumentException, SQLException {
+        Entry entry = entries.get(uuid);
+        if(entry != null && entry.group() != null) {
+            hits.increment();
+            return entry.group();
+        }
+        misses.increment();
+        EffectiveGroup group = databaseManager.getUsersEffectiveGroup(uuid);
+        if(entry != null) {
+            // the version is compared under the entry's lock, an invalidation of the same user while loading keeps the loaded group out
+            Entry loaded = new Entry(entry.version(), group);
+            entries.computeIfPresent(uuid, (key, current) -> current.version() == loaded.version() ? loaded : current);
+        }
+        return group;
+    }
+
+    /**
+     * Drops the cached effective group of the given user, the next lookup loads it again
+     * @param uuid the user's uuid
+     */
+    public void invalidate(String uuid) {
+        entries.computeIfPresent(uuid, (key, current) -> new Entry(versions.incrementAndGet(), null));
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache
+     * @return the number of lookups answered from the cache
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that needed the database
+     * @return the number of lookups that needed the database
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of cached effective groups
+     * @return the number of cached effective groups
+     */
+    public int getSize() {
+        int size = 0;
+        for(Entry entry : entries.values()) {
+            if(entry.group() != null)
+                size++;
+        }
+        return size;
+    }
+
+    // HELPER
+
+    /**
+     * The cache entry of a tracked player
+     * @param version the entry's version, changes whenever the entry gets invalidated
+     * @param group the player's effective group, null if it is not loaded yet
+     */
+    private record Entry(long version, EffectiveGroup group) {
+    }
+}
@@ -1,13 +1,21 @@
 package com.schnatz.groupplugin;
 
+import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.player.AsyncPlayerChatEvent;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.Plugin;
 
 import java.sql.SQLException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This class is used to add prefixes and color to the chat messages
@@ -15,83 +23,148 @@ import java.sql.SQLException;
  */
 public class GroupListener implements Listener {
     /**
-     * The message format used when a player enters the server
+     * The time in milliseconds a player prepared on pre-login may take to join before the preparation is dropped
      */
-    private final String messageServerJoin;
+    private static final long JOIN_TIMEOUT = 60000;
     /**
-     * The message format used when a player leaves the server
+     * The interval in ticks in which the entries of players who are not online anymore are removed
+     */
+    private static final long SWEEP_INTERVAL = 600;
+    /**
+     * The message format used when a player enters the server
      */
-    private final String messageServerLeave;
+    private final MessageTemplate messageServerJoin;
     /**
-     * The message format used when a player writes in the chat
+     * The message format used when a player leaves the server
      */
-    private final String messageChat;
+    private final MessageTemplate messageServerLeave;
     /**
-     * The default group's name
+     * The message format used when a player writes in the chat, its literal '%' are escaped for {@link AsyncPlayerChatEvent#setFormat(String)}
      */
-    private final String defaultGroupName;
+    private final MessageTemplate messageChat;
     /**
      * The {@link DatabaseManager} used by the plugin
      */
     private final DatabaseManager databaseManager;
+    /**
+     * The cache holding the effective groups of the online players
+     */
+    private final EffectiveGroupCache effectiveGroupCache;
+    /**
+     * A map mapping the uuids of the online players on their rendered chat format, rendered again once their effective group changes
+     */
+    private final Map<UUID, ChatFormat> chatFormats;
+    /**
+     * A map mapping the uuids of the players prepared on pre-login who did not join yet on the time they were prepared at
+     */
+    private final Map<UUID, Long> pendingJoins;
 
     /**
      * Initialises the missing variables with the given values
      * @param messageServerJoin the message that gets displayed when a player joins the server
      * @param messageServerLeave the message that gets displayed when a player leaves the server
      * @param messageChat the message that gets displayed when a player writes in the chat
-     * @param defaultGroupName the default group's name
      * @param databaseManager the {@link DatabaseManager} used by the plugin
      */
-    public GroupListener(String messageServerJoin, String messageServerLeave, String messageChat, String defaultGroupName, DatabaseManager databaseManager) {
-        this.messageServerJoin = messageServerJoin;
-        this.messageServerLeave = messageServerLeave;
-        this.messageChat = messageChat;
-        this.defaultGroupName = defaultGroupName;
+    public GroupListener(String messageServerJoin, String messageServerLeave, String messageChat, DatabaseManager databaseManager) {
+        this.messageServerJoin = MessageTemplate.compile("MessageServerJoin", messageServerJoin, "name", "prefix", "color");
+        this.messageServerLeave = MessageTemplate.compile("MessageServerLeave", messageServerLeave, "name", "prefix", "color");
+        this.messageChat = MessageTemplate.compile("MessageChat", messageChat, "name", "prefix", "color", "message").mapLiterals(literal -> literal.replace("%", "%%"));
 
         this.databaseManager = databaseManager;
+        this.effectiveGroupCache = databaseManager.getEffectiveGroupCache();
+        this.chatFormats = new ConcurrentHashMap<>();
+        this.pendingJoins = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Starts removing the entries of players who are not online anymore periodically,
+     * e.g. of players who disconnected between pre-login and joining, for whom neither {@link GroupListener#onLogin(PlayerLoginEvent)} nor {@link GroupListener#onQuit(PlayerQuitEvent)} is called
+     * @param plugin the plugin the sweep task belongs to
+     */
+    public void start(Plugin plugin) {
+        Bukkit.getScheduler().runTaskTimer(plugin, this::sweep, SWEEP_INTERVAL, SWEEP_INTERVAL);
+    }
+
+    /**
+     * Prepares each player that is allowed to log in before the player enters the server, so joining needs no database access
+     * @param e the {@link AsyncPlayerPreLoginEvent} triggered by a player logging in (called asynchronously)
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPreLogin(AsyncPlayerPreLoginEvent e) {
+        if(e.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED)
+            return;
+        try {
+            effectiveGroupCache.track(e.getUniqueId().toString());
+            pendingJoins.put(e.getUniqueId(), System.currentTimeMillis());
+        } catch (SQLException ex) {
+            // the effective group is loaded again when the player joins
+            Bukkit.getLogger().warning(ex.getMessage());
+        }
     }
 
     /**
-     * Catches messages send by the players and gives them the desired format and color
+     * Stops caching the effective group of a player who was prepared on pre-login but is not allowed to join after all (e.g. the server is full)
+     * @param e the {@link PlayerLoginEvent} triggered by a player logging in
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onLogin(PlayerLoginEvent e) {
+        if(e.getResult() == PlayerLoginEvent.Result.ALLOWED)
+            return;
+        Player player = e.getPlayer();
+        pendingJoins.remove(player.getUniqueId());
+        // the same player might still be online in another session
+        if(Bukkit.getPlayer(player.getUniqueId()) == null)
+            effectiveGroupCache.evict(player.getUniqueId().toString());
+    }
+
+    /**
+     * Catches messages send by the players and gives them the desired format and color.
+     * The player's part of the format is rendered once per effective group, the message itself is inserted by the server.
      * @param e the chat event triggered by a player writing a message
      */
     @EventHandler
     public void onChat(AsyncPlayerChatEvent e) {
         Player player = e.getPlayer();
-        String message = e.getMessage();
-        String format = messageChat;
+        UUID uuid = player.getUniqueId();
+        ChatFormat format = chatFormats.get(uuid);
         try {
-            format = replacePlaceMaker(format, player);
+            EffectiveGroup group = effectiveGroupCache.get(format != null ? format.uuid() : uuid.toString());
+            // the cache hands out a new group once the player's groups changed
+            if(format == null || !format.group().equals(group)) {
+                format = new ChatFormat(uuid.toString(), group, renderChatFormat(player.getName(), group));
+                // a player who quit meanwhile is not cached again (the sweep removes what slips through)
+                if(player.isOnline())
+                    chatFormats.put(uuid, format);
+            }
         } catch (SQLException ex) {
             throw new RuntimeException(ex);
         }
-        format = format.replace("%message%", message);
-        e.setFormat(format);
+        e.setFormat(format.format());
     }
 
     /**
-     * Customizes the join message for each player. Adds the player to the default server group if he has none yet.
+     * Customizes the join message for each player.
+     * The player's effective group was loaded on login ({@link GroupListener#onPreLogin(AsyncPlayerPreLoginEvent)}), so only the cache is read.
      * @param e the {@link PlayerJoinEvent} triggered by a player joining the server
      */
     @EventHandler
     public void onJoin(PlayerJoinEvent e) {
         Player player = e.getPlayer();
-        try {
-            if(!databaseManager.getGroups(player.getUniqueId().toString()).contains(defaultGroupName)){
-                try {
-                    databaseManager.addUserToGroup(player.getUniqueId().toString(), defaultGroupName);
-                } catch (IllegalArgumentException|SQLException ex) {
-                    throw new RuntimeException(ex);
-                }
+        pendingJoins.remove(player.getUniqueId());
+        databaseManager.getPlayerNameIndex().add(player.getName());
+        // only if the player was not tracked on login
+        if(!effectiveGroupCache.isTracked(player.getUniqueId().toString())) {
+            try {
+                effectiveGroupCache.track(player.getUniqueId().toString());
+            } catch (SQLException ex) {
+                throw new RuntimeException(ex);
             }
-        } catch (SQLException ex) {
-            throw new RuntimeException(ex);
         }
 
-        String joinMessage = messageServerJoin;
+        String joinMessage;
         try {
-            joinMessage = replacePlaceMaker(joinMessage, player);
+            joinMessage = replacePlaceMaker(messageServerJoin, player);
         } catch (SQLException ex) {
             throw new RuntimeException(ex);
         }
@@ -105,25 +178,62 @@ public class GroupListener implements Listener {
     @EventHandler
     public void onQuit(PlayerQuitEvent e) {
         Player player = e.getPlayer();
-        String quitMessage = messageServerLeave;
+        String quitMessage;
         try {
-            quitMessage = replacePlaceMaker(quitMessage, player);
+            quitMessage = replacePlaceMaker(messageServerLeave, player);
         } catch (SQLException ex) {
             throw new RuntimeException(ex);
+        } finally {
+            effectiveGroupCache.evict(player.getUniqueId().toString());
+            chatFormats.remove(player.getUniqueId());
         }
         e.setQuitMessage(quitMessage);
     }
 
+    /**
+     * Removes the preparations of players who did not join in time and the chat formats of players who are not online anymore (called on the main thread)
+     */
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        for(Map.Entry<UUID, Long> pendingJoin : pendingJoins.entrySet()) {
+            UUID uuid = pendingJoin.getKey();
+            if(now - pendingJoin.getValue() < JOIN_TIMEOUT || !pendingJoins.remove(uuid, pendingJoin.getValue()))
+                continue;
+            if(Bukkit.getPlayer(uuid) == null)
+                effectiveGroupCache.evict(uuid.toString());
+        }
+        chatFormats.keySet().removeIf(uuid -> Bukkit.getPlayer(uuid) == null);
+    }
+
     /**
      * Replaces the following place-makers: %name%, %prefix% and %color% with the desired values.
-     * @param text the text where the spacers will be replaced
+     * @param template the message where the spacers will be replaced
      * @param player the player determining the values for the place-makers
      * @return the text with all place-makers replaced by the desired values
      */
-    private String replacePlaceMaker(String text, Player player) throws SQLException {
-        text = text.replace("%name%", player.getName());
-        text = text.replace("%prefix%", databaseManager.getUserPrefix(player.getUniqueId().toString()));
-        text = text.replace("%color%", String.valueOf(databaseManager.getUserColorChar(player.getUniqueId().toString())));
-        return text;
+    private String replacePlaceMaker(MessageTemplate template, Player player) throws SQLException {
+        EffectiveGroup group = effectiveGroupCache.get(player.getUniqueId().toString());
+        return template.render(player.getName(), group.prefix(), group.colorChar());
+    }
+
+    /**
+     * Renders the chat format of the given player: %name%, %prefix% and %color% are replaced by the player's (escaped) values
+     * and %message% by the server's message argument, so the result is a valid {@link AsyncPlayerChatEvent#setFormat(String)} format.
+     * @param name the player's name
+     * @param group the player's effective group
+     * @return the rendered chat format
+     */
+    private String renderChatFormat(String name, EffectiveGroup group) {
+        // the message is the second argument of the chat format
+        return messageChat.render(name.replace("%", "%%"), group.prefix().replace("%", "%%"), group.colorChar(), "%2$s");
+    }
+
+    /**
+     * The rendered chat format of a player
+     * @param uuid the player's uuid
+     * @param group the effective group the format was rendered for
+     * @param format the rendered format
+     */
+    private record ChatFormat(String uuid, EffectiveGroup group, String format) {
     }
 }
\ No newline at end of file
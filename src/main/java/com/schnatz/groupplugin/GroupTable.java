@@ -0,0 +1,72 @@
+package com.schnatz.groupplugin;
+
+import java.util.*;
+
+/**
+ * This class is an immutable snapshot of the server group table.
+ * Group names are looked up case-insensitively, just like the database compares them.
+ * @author Henry Schnatz
+ */
+public class GroupTable {
+    /**
+     * A map mapping the lowercase group names on the groups
+     */
+    private final Map<String, ServerGroup> groups;
+    /**
+     * The names of all groups in alphabetical order
+     */
+    private final List<String> names;
+
+    /**
+     * Builds the snapshot of the given groups
+     * @param groups all groups of the server group table
+     */
+    public GroupTable(Collection<ServerGroup> groups) {
+        Map<String, ServerGroup> map = new HashMap<>();
+        List<String> list = new ArrayList<>(groups.size());
+        for(ServerGroup group : groups) {
+            map.put(key(group.name()), group);
+            list.add(group.name());
+        }
+        list.sort(String.CASE_INSENSITIVE_ORDER);
+        this.groups = Map.copyOf(map);
+        this.names = List.copyOf(list);
+    }
+
+    /**
+     * Returns the group with the given name
+     * @param name the group's name (case-insensitive)
+     * @return the group with the given name or null if there is none
+     */
+    public ServerGroup get(String name) {
+        return groups.get(key(name));
+    }
+
+    /**
+     * Checks whether there is a group with the given name
+     * @param name the group's name (case-insensitive)
+     * @return true if the group exists - false if it does not exist
+     */
+    public boolean contains(String name) {
+        return groups.containsKey(key(name));
+    }
+
+    /**
+     * Returns the names of all groups in alphabetical order
+     * @return an unmodifiable list of the names of all groups
+     */
+    public List<String> getNames() {
+        return names;
+    }
+
+    // HELPER
+
+    /**
+     * Returns the key the given group name is stored with
+     * @param name the group's name
+     * @return the key the given group name is stored with
+     */
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -2,6 +2,7 @@ package com.schnatz.groupplugin;
 
 import com.schnatz.groupplugin.commands.*;
 import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.permissions.PermissionDefault;
 import org.bukkit.plugin.PluginManager;
@@ -91,7 +92,8 @@ public class Main extends JavaPlugin {
                     && config.isInt("DefaultGroupLevel")
                     && config.isInt("DefaultGroupColorCode")))
                 throw new IllegalStateException();
-            databaseManager = new DatabaseManager(config.getString("DatabaseIpAddress"), config.getInt("DatabasePort"), config.getString("DatabaseUser"), config.getString("DatabasePassword"), config.getString("DatabaseName"), config.getString("DefaultGroupName"), config.getString("DefaultGroupPrefix"), config.getInt("DefaultGroupLevel"), config.getInt("DefaultGroupColorCode"));
+            DatabaseSettings settings = new DatabaseSettings(config);
+            databaseManager = new DatabaseManager(config.getString("DatabaseIpAddress"), config.getInt("DatabasePort"), config.getString("DatabaseUser"), config.getString("DatabasePassword"), config.getString("DatabaseName"), config.getString("DefaultGroupName"), config.getString("DefaultGroupPrefix"), config.getInt("DefaultGroupLevel"), config.getInt("DefaultGroupColorCode"), settings);
         } catch (SQLException e) {
             this.getLogger().severe(e.getMessage());
             System.exit(1);
@@ -100,11 +102,19 @@ public class Main extends JavaPlugin {
 
         if(!(config.isString("MessageServerJoin")
                 && config.isString("MessageServerLeave")
-                && config.isString("MessageChat")
-                && config.isString("DefaultGroupName")))
+                && config.isString("MessageChat")))
             throw new IllegalStateException();
+        // indexing the names of all known players for tab completions
+        for(OfflinePlayer offlinePlayer : Bukkit.getOfflinePlayers()) {
+            if(offlinePlayer.getName() != null)
+                databaseManager.getPlayerNameIndex().add(offlinePlayer.getName());
+        }
+
         PluginManager pm = Bukkit.getPluginManager();
-        pm.registerEvents(new GroupListener(config.getString("MessageServerJoin"),  config.getString("MessageServerLeave"), config.getString("MessageChat"), config.getString("DefaultGroupName") ,databaseManager), this);
+        GroupListener groupListener = new GroupListener(config.getString("MessageServerJoin"),  config.getString("MessageServerLeave"), config.getString("MessageChat"), databaseManager);
+        pm.registerEvents(groupListener, this);
+        groupListener.start(this);
+        pm.registerEvents(new SignListener(databaseManager.getSignRegistry()), this);
 
         // Registering commands
         CommandSign commandSign = new CommandSign(databaseManager, config);
@@ -149,7 +159,17 @@ public class Main extends JavaPlugin {
     @Override
     public void onDisable() {
         super.onDisable();
-        CommandSign.removeAllSigns();
+        if(databaseManager != null) {
+            EffectiveGroupCache effectiveGroupCache = databaseManager.getEffectiveGroupCache();
+            this.getLogger().info("Effective group cache: " + effectiveGroupCache.getHits() + " hits, " + effectiveGroupCache.getMisses() + " misses");
+            MainThreadQueue refreshQueue = databaseManager.getRefreshQueue();
+            this.getLogger().info("Refresh queue: " + refreshQueue.getQueueDepth() + " pending, " + refreshQueue.getDrainRate() + " refreshes/s");
+            this.getLogger().info("Statement executions: " + databaseManager.getStatementExecutionCounts());
+            // closing writes the pending membership changes
+            if(databaseManager.getPendingWrites() > 0)
+                this.getLogger().info("Writing " + databaseManager.getPendingWrites() + " pending membership changes");
+            databaseManager.close();
+        }
     }
 
     /**
@@ -0,0 +1,138 @@
+package com.schnatz.groupplugin;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class runs tasks on the server's main thread within a time budget per tick, the remaining tasks are carried over to the next ticks.
+ * Tasks are submitted with a key, a task replaces the pending task with the same key (keeping its place in the queue),
+ * so e.g. a user whose groups change several times before the refresh runs is only refreshed once.
+ * @author Henry Schnatz
+ */
+public class MainThreadQueue {
+    /**
+     * The time in nanoseconds the queue may spend per tick
+     */
+    private final long budget;
+    /**
+     * A map mapping the keys of the pending tasks on the tasks, in the order they were submitted
+     */
+    private final LinkedHashMap<String, Runnable> pendingTasks;
+    /**
+     * The task draining the queue every tick, null if the queue was not started
+     */
+    private BukkitTask drainTask;
+    /**
+     * Whether the queue was closed, tasks submitted afterwards are dropped
+     */
+    private boolean closed;
+    /**
+     * The time in milliseconds the current measuring window of the drain rate started at
+     */
+    private long windowStart;
+    /**
+     * The number of tasks run within the current measuring window
+     */
+    private int windowDrained;
+    /**
+     * The number of tasks run per second, measured over the last complete second
+     */
+    private volatile int drainRate;
+
+    /**
+     * Initialises an empty queue
+     * @param budget the time in microseconds the queue may spend per tick (at least one task is run per tick)
+     */
+    public MainThreadQueue(long budget) {
+        this.budget = budget * 1000;
+        this.pendingTasks = new LinkedHashMap<>();
+        this.windowStart = System.currentTimeMillis();
+    }
+
+    /**
+     * Starts draining the queue every tick
+     * @param plugin the plugin the drain task belongs to
+     */
+    public void start(Plugin plugin) {
+        drainTask = Bukkit.getScheduler().runTaskTimer(plugin, this::drain, 1, 1);
+    }
+
+    /**
+     * Queues the given task, replacing the pending task with the same key. Once the queue is closed the task is dropped.
+     * @param key the task's key (e.g. the uuid of the user to refresh)
+     * @param task the task
+     */
+    public synchronized void submit(String key, Runnable task) {
+        // the plugin might already be disabled
+        if(closed)
+            return;
+        pendingTasks.put(key, task);
+    }
+
+    /**
+     * Returns the number of pending tasks
+     * @return the number of pending tasks
+     */
+    public synchronized int getQueueDepth() {
+        return pendingTasks.size();
+    }
+
+    /**
+     * Returns the number of tasks run per second, measured over the last complete second
+     * @return the number of tasks run per second
+     */
+    public int getDrainRate() {
+        return drainRate;
+    }
+
+    /**
+     * Stops draining the queue, the pending tasks and all tasks submitted afterwards are dropped
+     */
+    public void close() {
+        if(drainTask != null)
+            drainTask.cancel();
+        synchronized (this) {
+            closed = true;
+            pendingTasks.clear();
+        }
+    }
+
+    // HELPER
+
+    /**
+     * Runs pending tasks until the queue is empty or the tick's budget is used up (called on the main thread)
+     */
+    private void drain() {
+        long start = System.nanoTime();
+        int drained = 0;
+        do {
+            Runnable task;
+            synchronized (this) {
+                Iterator<Map.Entry<String, Runnable>> iterator = pendingTasks.entrySet().iterator();
+                if(!iterator.hasNext())
+                    break;
+                task = iterator.next().getValue();
+                iterator.remove();
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                Bukkit.getLogger().warning(e.toString());
+            }
+            drained++;
+        } while(System.nanoTime() - start < budget);
+
+        windowDrained += drained;
+        long now = System.currentTimeMillis();
+        if(now - windowStart >= 1000) {
+            drainRate = (int) (windowDrained * 1000L / (now - windowStart));
+            windowStart = now;
+            windowDrained = 0;
+        }
+    }
+}
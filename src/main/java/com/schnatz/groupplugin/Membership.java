@@ -0,0 +1,10 @@
+package com.schnatz.groupplugin;
+
+/**
+ * A user's membership in a group
+ * @param uuid the user's uuid
+ * @param groupId the group's id
+ * @author Henry Schnatz
+ */
+public record Membership(String uuid, int groupId) {
+}
@@ -0,0 +1,303 @@
+package com.schnatz.groupplugin;
+
+import org.bukkit.Bukkit;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class collects membership changes and writes them to the database in batches (write-behind).
+ * Changes of the same membership are merged, only the latest one is written.
+ * A batch is written when the queue reaches the batch size or the flush interval passed, a full queue is flushed by the thread adding to it.
+ * A change is only queued if there is room for it, so a failed add or remove leaves nothing behind that is written later.
+ * Like the immediate writes, adding an existing membership and removing a missing one are rejected, the pending changes count as written.
+ * @author Henry Schnatz
+ */
+public class MembershipWriteQueue implements AutoCloseable {
+    /**
+     * Writes the given changes to the database
+     */
+    private final Writer writer;
+    /**
+     * Reads whether a membership is stored in the database
+     */
+    private final Reader reader;
+    /**
+     * The maximum number of pending changes
+     */
+    private final int capacity;
+    /**
+     * The number of pending changes that triggers a flush
+     */
+    private final int batchSize;
+    /**
+     * A map mapping the memberships on their pending change, in the order they were changed
+     */
+    private LinkedHashMap<Membership, Write> pendingWrites;
+    /**
+     * A map mapping the memberships on their change that is currently written, empty if no batch is written
+     */
+    private Map<Membership, Write> writingWrites;
+    /**
+     * A map mapping the uuids of the users with pending or currently written changes on the number of those changes
+     */
+    private final Map<String, Integer> pendingUsers;
+    /**
+     * The lock making sure only one batch is written at a time, so a finished flush means all earlier changes are written
+     */
+    private final Object flushLock;
+    /**
+     * The lock making sure only one change is checked and queued at a time, so the check is still valid when the change is queued
+     */
+    private final Object enqueueLock;
+    /**
+     * The executor flushing the queue periodically and whenever it reaches the batch size
+     */
+    private final ScheduledExecutorService flusher;
+
+    /**
+     * Initialises an empty queue and starts flushing it periodically
+     * @param writer writes the changes to the database
+     * @param reader reads whether a membership is stored in the database
+     * @param capacity the maximum number of pending changes
+     * @param batchSize the number of pending changes that triggers a flush
+     * @param flushInterval the time in milliseconds between two periodic flushes
+     */
+    public MembershipWriteQueue(Writer writer, Reader reader, int capacity, int batchSize, long flushInterval) {
+        this.writer = writer;
+        this.reader = reader;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.pendingWrites = new LinkedHashMap<>();
+        this.writingWrites = Map.of();
+        this.pendingUsers = new HashMap<>();
+        this.flushLock = new Object();
+        this.enqueueLock = new Object();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "GroupPluginSchnatz-WriteBehind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleWithFixedDelay(this::flushQuietly, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues adding the given user to the given group
+     * @param uuid the user's uuid
+     * @param groupId the group's id
+     * @param expirationTime the time the membership expires at or null if it never expires
+     * @throws IllegalArgumentException if the given user is already member of the given group (the change is not queued)
+     * @throws SQLException if something goes wrong with the database connection or the queue is full and flushing it goes wrong (the change is not queued)
+     */
+    public void add(String uuid, int groupId, Timestamp expirationTime) throws IllegalArgumentException, SQLException {
+        enqueue(new Write(new Membership(uuid, groupId), true, expirationTime));
+    }
+
+    /**
+     * Queues removing the given user from the given group
+     * @param uuid the user's uuid
+     * @param groupId the group's id
+     * @throws IllegalArgumentException if the given user is not a member of the given group (the change is not queued)
+     * @throws SQLException if something goes wrong with the database connection or the queue is full and flushing it goes wrong (the change is not queued)
+     */
+    public void remove(String uuid, int groupId) throws IllegalArgumentException, SQLException {
+        enqueue(new Write(new Membership(uuid, groupId), false, null));
+    }
+
+    /**
+     * Writes all pending changes, returns after all changes queued before the call are written
+     * @throws SQLException if something goes wrong with the database connection (the changes stay queued)
+     */
+    public void flush() throws SQLException {
+        synchronized (flushLock) {
+            List<Write> batch;
+            synchronized (this) {
+                if(pendingWrites.isEmpty())
+                    return;
+                batch = new ArrayList<>(pendingWrites.values());
+                writingWrites = pendingWrites;
+                pendingWrites = new LinkedHashMap<>();
+            }
+            try {
+                writer.write(batch);
+            } catch (SQLException | RuntimeException e) {
+                synchronized (this) {
+                    writingWrites = Map.of();
+                    // newer changes of the same memberships win over the failed ones
+                    LinkedHashMap<Membership, Write> writes = new LinkedHashMap<>();
+                    for(Write write : batch)
+                        writes.put(write.membership(), write);
+                    for(Write write : pendingWrites.values()) {
+                        if(writes.containsKey(write.membership()))
+                            release(write.membership().uuid());
+                        writes.put(write.membership(), write);
+                    }
+                    pendingWrites = writes;
+                }
+                throw e;
+            }
+            synchronized (this) {
+                writingWrites = Map.of();
+                for(Write write : batch)
+                    release(write.membership().uuid());
+            }
+        }
+    }
+
+    /**
+     * Writes all pending changes if the given user has pending changes, so reads of the user see them
+     * @param uuid the user's uuid
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    public void flush(String uuid) throws SQLException {
+        if(hasPendingWrites(uuid))
+            flush();
+    }
+
+    /**
+     * Checks whether the given user has pending changes (including changes that are being written)
+     * @param uuid the user's uuid
+     * @return true if the user has pending changes - false if the user has none
+     */
+    public synchronized boolean hasPendingWrites(String uuid) {
+        return pendingUsers.containsKey(uuid);
+    }
+
+    /**
+     * Returns the number of pending changes
+     * @return the number of pending changes
+     */
+    public synchronized int size() {
+        return pendingWrites.size();
+    }
+
+    /**
+     * Stops the periodic flushes and writes the remaining changes
+     */
+    @Override
+    public void close() {
+        flusher.shutdownNow();
+        try {
+            flush();
+        } catch (SQLException e) {
+            if(Bukkit.getServer() != null)
+                Bukkit.getLogger().warning("Writing " + size() + " pending membership changes failed: " + e.getMessage());
+        }
+    }
+
+    // HELPER
+
+    /**
+     * Queues the given change, replacing the pending change of the same membership
+     * @param write the change
+     * @throws IllegalArgumentException if the given change adds an existing membership or removes a missing one (the change is not queued)
+     * @throws SQLException if something goes wrong with the database connection or the queue is full and flushing it goes wrong (the change is not queued)
+     */
+    private void enqueue(Write write) throws IllegalArgumentException, SQLException {
+        int size;
+        synchronized (enqueueLock) {
+            boolean member = isMember(write.membership());
+            if(write.add() && member)
+                throw new IllegalArgumentException("The given user is already member of the given group!");
+            if(!write.add() && !member)
+                throw new IllegalArgumentException("The given user is not a member of the given group!");
+            // a full queue slows the producers down by letting them write the batch themselves before their change is queued
+            if(!hasRoom(write.membership()))
+                flush();
+            synchronized (this) {
+                if(pendingWrites.put(write.membership(), write) == null)
+                    pendingUsers.merge(write.membership().uuid(), 1, Integer::sum);
+                size = pendingWrites.size();
+            }
+        }
+        if(size >= batchSize)
+            flusher.execute(this::flushQuietly);
+    }
+
+    /**
+     * Checks whether the given membership exists once all pending changes are written
+     * @param membership the membership
+     * @return true if the membership exists - false if it does not
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    private boolean isMember(Membership membership) throws SQLException {
+        Write write;
+        synchronized (this) {
+            write = pendingWrites.get(membership);
+            if(write == null)
+                write = writingWrites.get(membership);
+        }
+        // a change that is neither pending nor being written is already in the database
+        return write != null ? write.add() : reader.isMember(membership.uuid(), membership.groupId());
+    }
+
+    /**
+     * Checks whether a change of the given membership fits into the queue, replacing a pending change needs no room
+     * @param membership the membership
+     * @return true if the change fits into the queue - false if the queue is full
+     */
+    private synchronized boolean hasRoom(Membership membership) {
+        return pendingWrites.size() < capacity || pendingWrites.containsKey(membership);
+    }
+
+    /**
+     * Writes all pending changes and logs a failure (used by {@link MembershipWriteQueue#flusher})
+     */
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (SQLException | RuntimeException e) {
+            if(Bukkit.getServer() != null)
+                Bukkit.getLogger().warning("Writing " + size() + " pending membership changes failed, retrying later: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Counts down the pending changes of the given user
+     * @param uuid the user's uuid
+     */
+    private void release(String uuid) {
+        pendingUsers.computeIfPresent(uuid, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * A pending change of a membership
+     * @param membership the membership
+     * @param add true if the user is added to the group - false if the user is removed from it
+     * @param expirationTime the time an added membership expires at or null if it never expires
+     */
+    public record Write(Membership membership, boolean add, Timestamp expirationTime) {
+    }
+
+    /**
+     * Reads memberships from the database
+     */
+    @FunctionalInterface
+    public interface Reader {
+        /**
+         * Checks whether the given membership is stored in the database
+         * @param uuid the user's uuid
+         * @param groupId the group's id
+         * @return true if the membership is stored - false if it is not
+         * @throws SQLException if something goes wrong with the database connection
+         */
+        boolean isMember(String uuid, int groupId) throws SQLException;
+    }
+
+    /**
+     * Writes changes to the database
+     */
+    @FunctionalInterface
+    public interface Writer {
+        /**
+         * Writes the given changes (at most one per membership) to the database
+         * @param writes the changes
+         * @throws SQLException if something goes wrong with the database connection
+         */
+        void write(List<Write> writes) throws SQLException;
+    }
+}
@@ -0,0 +1,156 @@
+package com.schnatz.groupplugin;
+
+import org.bukkit.Bukkit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * A config message compiled once into literal segments and placeholder slots (e.g. "Group %name% created").
+ * Rendering appends the segments and the typed arguments to a reused {@link StringBuilder}, instead of scanning the whole message once per placeholder.
+ * @author Henry Schnatz
+ */
+public class MessageTemplate {
+    /**
+     * The builder the templates are rendered into, one per thread
+     */
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+    /**
+     * The literal segments, every segment but the last one is followed by a slot
+     */
+    private final String[] literals;
+    /**
+     * The index of the argument rendered into each slot
+     */
+    private final int[] slots;
+    /**
+     * The number of arguments the template is rendered with
+     */
+    private final int arguments;
+
+    /**
+     * Initialises the missing variables with the given values
+     * @param literals the literal segments, one more than slots
+     * @param slots the index of the argument rendered into each slot
+     * @param arguments the number of arguments the template is rendered with
+     */
+    private MessageTemplate(String[] literals, int[] slots, int arguments) {
+        this.literals = literals;
+        this.slots = slots;
+        this.arguments = arguments;
+    }
+
+    /**
+     * Compiles the given message, placeholders are lowercase names enclosed by '%' (e.g. %name%) and every other '%' is a literal.
+     * A placeholder that is not one of the given placeholders is logged and kept as literal text.
+     * @param key the message's config key (used to report unknown placeholders)
+     * @param message the message
+     * @param placeholders the names of the placeholders the message may contain (without '%'), in the order of the arguments of {@link MessageTemplate#render(Object...)}
+     * @return the compiled message
+     */
+    public static MessageTemplate compile(String key, String message, String... placeholders) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while(i < message.length()) {
+            int end = placeholderEnd(message, i);
+            if(end < 0) {
+                literal.append(message.charAt(i++));
+                continue;
+            }
+            String name = message.substring(i + 1, end);
+            int slot = List.of(placeholders).indexOf(name);
+            if(slot < 0) {
+                if(Bukkit.getServer() != null)
+                    Bukkit.getLogger().warning(key + " contains the unknown placeholder %" + name + "%, it is kept as text!");
+                literal.append(message, i, end + 1);
+                i = end + 1;
+                continue;
+            }
+            literals.add(literal.toString());
+            literal.setLength(0);
+            slots.add(slot);
+            i = end + 1;
+        }
+        literals.add(literal.toString());
+        return new MessageTemplate(literals.toArray(new String[0]), slots.stream().mapToInt(Integer::intValue).toArray(), placeholders.length);
+    }
+
+    /**
+     * Returns a copy of this template whose literal segments were changed by the given mapping (e.g. to escape them), the slots stay the same
+     * @param mapping changes a literal segment
+     * @return the changed copy of this template
+     */
+    public MessageTemplate mapLiterals(UnaryOperator<String> mapping) {
+        String[] mapped = new String[literals.length];
+        for(int i = 0; i < literals.length; i++)
+            mapped[i] = mapping.apply(literals[i]);
+        return new MessageTemplate(mapped, slots, arguments);
+    }
+
+    /**
+     * Renders the template with the given arguments
+     * @param arguments the values of the placeholders, in the order they were given to {@link MessageTemplate#compile(String, String, String...)}
+     * @return the rendered message
+     * @throws IllegalArgumentException if the number of arguments does not match the number of placeholders
+     */
+    public String render(Object... arguments) throws IllegalArgumentException {
+        StringBuilder builder = BUILDER.get();
+        builder.setLength(0);
+        return renderTo(builder, arguments).toString();
+    }
+
+    /**
+     * Appends the template rendered with the given arguments to the given builder
+     * @param builder the builder
+     * @param arguments the values of the placeholders, in the order they were given to {@link MessageTemplate#compile(String, String, String...)}
+     * @return the given builder
+     * @throws IllegalArgumentException if the number of arguments does not match the number of placeholders
+     */
+    public StringBuilder renderTo(StringBuilder builder, Object... arguments) throws IllegalArgumentException {
+        if(arguments.length != this.arguments)
+            throw new IllegalArgumentException("The number of arguments does not match the number of placeholders!");
+        for(int i = 0; i < slots.length; i++) {
+            builder.append(literals[i]);
+            append(builder, arguments[slots[i]]);
+        }
+        return builder.append(literals[slots.length]);
+    }
+
+    // HELPER
+
+    /**
+     * Returns the index of the '%' closing the placeholder that starts at the given index
+     * @param message the message
+     * @param start the index
+     * @return the index of the closing '%', -1 if no placeholder starts at the given index
+     */
+    private static int placeholderEnd(String message, int start) {
+        if(message.charAt(start) != '%')
+            return -1;
+        int i = start + 1;
+        while(i < message.length() && message.charAt(i) >= 'a' && message.charAt(i) <= 'z')
+            i++;
+        return i > start + 1 && i < message.length() && message.charAt(i) == '%' ? i : -1;
+    }
+
+    /**
+     * Appends the given argument to the given builder, numbers and chars are appended without converting them to a String first
+     * @param builder the builder
+     * @param argument the argument
+     */
+    private static void append(StringBuilder builder, Object argument) {
+        if(argument instanceof CharSequence text)
+            builder.append(text);
+        else if(argument instanceof Integer number)
+            builder.append(number.intValue());
+        else if(argument instanceof Long number)
+            builder.append(number.longValue());
+        else if(argument instanceof Character character)
+            builder.append(character.charValue());
+        else
+            builder.append(argument);
+    }
+}
@@ -0,0 +1,19 @@
+package com.schnatz.groupplugin;
+
+/**
+ * A parameterized SQL statement known to the {@link StatementRegistry} (usually an enum constant)
+ * @author Henry Schnatz
+ */
+public interface NamedStatement {
+    /**
+     * Returns the statement's name
+     * @return the statement's name
+     */
+    String name();
+
+    /**
+     * Returns the statement's SQL, parameters are marked with '?'
+     * @return the statement's SQL
+     */
+    String sql();
+}
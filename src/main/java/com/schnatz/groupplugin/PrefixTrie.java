@@ -0,0 +1,137 @@
+package com.schnatz.groupplugin;
+
+import java.util.*;
+
+/**
+ * This class is a case-insensitive prefix tree of names, used to answer tab completions without scanning every name.
+ * The names keep their original spelling, names differing only in case replace each other.
+ * @author Henry Schnatz
+ */
+public class PrefixTrie {
+    /**
+     * The root node (representing the empty prefix)
+     */
+    private final Node root;
+    /**
+     * The number of stored names
+     */
+    private int size;
+
+    /**
+     * Initialises an empty trie
+     */
+    public PrefixTrie() {
+        this.root = new Node();
+        this.size = 0;
+    }
+
+    /**
+     * Adds the given name, replacing a stored name differing only in case
+     * @param name the name
+     */
+    public synchronized void add(String name) {
+        Node node = root;
+        for(char c : normalize(name).toCharArray())
+            node = node.children.computeIfAbsent(c, key -> new Node());
+        if(node.name == null)
+            size++;
+        node.name = name;
+    }
+
+    /**
+     * Removes the given name (case-insensitive)
+     * @param name the name
+     * @return true if the name was stored - false if it was not
+     */
+    public synchronized boolean remove(String name) {
+        String key = normalize(name);
+        Deque<Node> path = new ArrayDeque<>();
+        Node node = root;
+        for(char c : key.toCharArray()) {
+            path.push(node);
+            node = node.children.get(c);
+            if(node == null)
+                return false;
+        }
+        if(node.name == null)
+            return false;
+        node.name = null;
+        size--;
+        // pruning the branch that leads to no other name anymore
+        for(int i = key.length() - 1; i >= 0 && node.name == null && node.children.isEmpty(); i--) {
+            Node parent = path.pop();
+            parent.children.remove(key.charAt(i));
+            node = parent;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the stored names starting with the given prefix (case-insensitive) in alphabetical order
+     * @param prefix the prefix
+     * @param limit the maximum number of returned names
+     * @return the stored names starting with the given prefix
+     */
+    public synchronized List<String> find(String prefix, int limit) {
+        List<String> names = new ArrayList<>();
+        Node node = root;
+        for(char c : normalize(prefix).toCharArray()) {
+            node = node.children.get(c);
+            if(node == null)
+                return names;
+        }
+        collect(node, names, limit);
+        return names;
+    }
+
+    /**
+     * Returns the number of stored names
+     * @return the number of stored names
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    // HELPER
+
+    /**
+     * Adds the names of the given node's subtree to the given list until the limit is reached
+     * @param node the node
+     * @param names the list
+     * @param limit the maximum size of the list
+     */
+    private static void collect(Node node, List<String> names, int limit) {
+        if(names.size() >= limit)
+            return;
+        if(node.name != null)
+            names.add(node.name);
+        for(Node child : node.children.values()) {
+            if(names.size() >= limit)
+                return;
+            collect(child, names, limit);
+        }
+    }
+
+    /**
+     * Returns the key the given name is stored under
+     * @param name the name
+     * @return the name in lower case
+     */
+    private static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * A node of the trie
+     */
+    private static class Node {
+        /**
+         * The child nodes, sorted by their character
+         */
+        private final TreeMap<Character, Node> children = new TreeMap<>();
+        /**
+         * The name ending at this node or null if no name ends here
+         */
+        private String name;
+    }
+}
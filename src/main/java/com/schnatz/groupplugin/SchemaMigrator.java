@@ -0,0 +1,237 @@
+package com.schnatz.groupplugin;
+
+import org.bukkit.Bukkit;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class brings the plugin's tables up to the {@link SchemaMigrator#LATEST_VERSION} on startup.
+ * The version of the tables is stored in their own table, every migration step is resumable - a step interrupted by a crash continues where it stopped on the next startup.
+ * @author Henry Schnatz
+ */
+public class SchemaMigrator {
+    /**
+     * The schema version this plugin works with
+     */
+    public static final int LATEST_VERSION = 4;
+    /**
+     * The registry of the {@link Sql} statements
+     */
+    private final StatementRegistry statements;
+    /**
+     * The number of rows converted per transaction
+     */
+    private final int chunkSize;
+    /**
+     * The default group's name, since version 4 its membership is implicit and never stored
+     */
+    private final String defaultGroupName;
+
+    /**
+     * Initialises the missing variables with the given values
+     * @param connectionPool the pool the connections are borrowed from
+     * @param chunkSize the number of rows converted per transaction
+     * @param defaultGroupName the default group's name
+     */
+    public SchemaMigrator(ConnectionPool connectionPool, int chunkSize, String defaultGroupName) {
+        this.statements = new StatementRegistry(connectionPool, Sql.values());
+        this.chunkSize = chunkSize;
+        this.defaultGroupName = defaultGroupName;
+    }
+
+    /**
+     * Runs all migration steps the tables are missing
+     * @return the schema version of the tables
+     * @throws SQLException if something goes wrong with the database connection
+     * @throws IllegalStateException if the tables were created by a newer version of this plugin
+     */
+    public int migrate() throws SQLException, IllegalStateException {
+        statements.update(Sql.CREATE_TABLE_SCHEMA_VERSION);
+        int version = statements.query(Sql.SELECT_VERSION, res -> res.next() ? res.getInt(1) : 0);
+        if(version > LATEST_VERSION)
+            throw new IllegalStateException("The database schema (version " + version + ") is newer than this plugin's schema (version " + LATEST_VERSION + ")!");
+        while(version < LATEST_VERSION) {
+            switch(version) {
+                case 0 -> createTables();
+                case 1 -> migrateToGroupIds();
+                case 2 -> addGroupKeys();
+                case 3 -> removeDefaultMemberships();
+            }
+            version++;
+            statements.update(Sql.UPDATE_VERSION, version, version);
+            if(version > 1 && Bukkit.getServer() != null)
+                Bukkit.getLogger().info("Migrated the database schema to version " + version);
+        }
+        return version;
+    }
+
+    // HELPER
+
+    /**
+     * Version 1: creates the original tables if they do not exist (the tables of installations older than the schema version are already there)
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    private void createTables() throws SQLException {
+        statements.update(Sql.CREATE_TABLE_GROUPS_V1);
+        statements.update(Sql.CREATE_TABLE_USERS_V1);
+        statements.update(Sql.CREATE_TABLE_SIGNS_V1);
+    }
+
+    /**
+     * Version 2: gives the groups an integer id and moves the memberships chunk by chunk into a table referencing the groups by their id and storing the uuids as 16 bytes
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    private void migrateToGroupIds() throws SQLException {
+        if(!existsColumn("servergroup", "groupid"))
+            statements.update(Sql.ADD_GROUP_IDS);
+        // the old membership table still exists until the very last chunk has been moved
+        if(existsColumn("users", "groupname")) {
+            statements.update(Sql.CREATE_TABLE_USERS_V2);
+            int moved = 0;
+            int chunk;
+            while((chunk = moveMemberships()) > 0) {
+                moved += chunk;
+                if(Bukkit.getServer() != null)
+                    Bukkit.getLogger().info("Migrated " + moved + " memberships");
+            }
+            statements.update(Sql.SWAP_USERS_TABLES);
+        }
+        statements.update(Sql.DROP_TABLE_USERS_V1);
+    }
+
+    /**
+     * Version 3: gives the groups a generated lowercase key with a unique index, so case-insensitive name lookups are index seeks
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    private void addGroupKeys() throws SQLException {
+        if(!existsColumn("servergroup", "groupkey"))
+            statements.update(Sql.ADD_GROUP_KEYS);
+    }
+
+    /**
+     * Version 4: removes all default group rows chunk by chunk. Users without rows are implicit members of the default group, users with other memberships are not members of it,
+     * so a stored default membership would only ever contradict that rule (the {@link DatabaseManager} does not store new ones either).
+     * No user is shown with another group afterwards, the default group's level counts for every user when choosing the group with the highest level.
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    private void removeDefaultMemberships() throws SQLException {
+        Integer groupId = statements.query(Sql.SELECT_GROUP_ID, res -> res.next() ? res.getInt(1) : null, defaultGroupName);
+        // a new database does not contain the default group yet
+        if(groupId == null)
+            return;
+        byte[] last = new byte[0];
+        int removed = 0;
+        List<byte[]> chunk;
+        while(!(chunk = removeDefaultMemberships(groupId, last)).isEmpty()) {
+            last = chunk.get(chunk.size() - 1);
+            removed += chunk.size();
+            if(Bukkit.getServer() != null)
+                Bukkit.getLogger().info("Removed " + removed + " stored default group memberships");
+        }
+    }
+
+    /**
+     * Removes the next chunk of default group rows in one transaction
+     * @param groupId the default group's id
+     * @param after the binary uuid after which the chunk starts
+     * @return the binary uuids of the users whose row was removed in uuid order, empty if there are no rows left
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    private List<byte[]> removeDefaultMemberships(int groupId, byte[] after) throws SQLException {
+        return statements.transaction(session -> {
+            List<byte[]> uuids = new ArrayList<>();
+            List<Object[]> rows = new ArrayList<>();
+            session.query(Sql.SELECT_DEFAULT_CHUNK, res -> {
+                while(res.next()) {
+                    uuids.add(res.getBytes(1));
+                    rows.add(new Object[]{res.getBytes(1), groupId});
+                }
+                return null;
+            }, groupId, after, chunkSize);
+            if(!rows.isEmpty())
+                session.batch(Sql.DELETE_MEMBERSHIP, rows);
+            return uuids;
+        });
+    }
+
+    /**
+     * Moves the next chunk of memberships from the old into the new membership table in one transaction.
+     * The uuids are converted with UNHEX instead of UUID_TO_BIN, which MariaDB lacks. Memberships of groups that do not exist anymore and of invalid uuids are dropped.
+     * @return the number of memberships removed from the old table, 0 if it is empty
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    private int moveMemberships() throws SQLException {
+        return statements.transaction(session -> {
+            String[] last = session.query(Sql.SELECT_MEMBERSHIP_CHUNK, res -> {
+                String[] key = null;
+                while(res.next())
+                    key = new String[]{res.getString(1), res.getString(2)};
+                return key;
+            }, chunkSize);
+            if(last == null)
+                return 0;
+            session.update(Sql.COPY_MEMBERSHIPS, last[0], last[1]);
+            return session.update(Sql.DELETE_MEMBERSHIPS_V1, last[0], last[1]);
+        });
+    }
+
+    /**
+     * Checks whether the given table of the current database has the given column
+     * @param table the table's name
+     * @param column the column's name
+     * @return true if the column exists - false if it does not exist
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    private boolean existsColumn(String table, String column) throws SQLException {
+        return statements.query(Sql.SELECT_COLUMN, ResultSet::next, table, column);
+    }
+
+    /**
+     * The statements of the migration steps, they describe historic table layouts and therefore name the tables literally
+     */
+    private enum Sql implements NamedStatement {
+        CREATE_TABLE_SCHEMA_VERSION("CREATE TABLE IF NOT EXISTS schema_version(id TINYINT NOT NULL, version INTEGER NOT NULL, PRIMARY KEY(id))"),
+        SELECT_VERSION("SELECT version FROM schema_version WHERE id = 0"),
+        UPDATE_VERSION("INSERT INTO schema_version(id, version) VALUES(0, ?) ON DUPLICATE KEY UPDATE version = ?"),
+        SELECT_COLUMN("SELECT 1 FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?"),
+        CREATE_TABLE_GROUPS_V1("CREATE TABLE IF NOT EXISTS servergroup(groupname VARCHAR (30) NOT NULL, groupprefix VARCHAR (10) NOT NULL, grouplevel INTEGER NOT NULL, groupcolorcode INTEGER NOT NULL, PRIMARY KEY(groupname))"),
+        CREATE_TABLE_USERS_V1("CREATE TABLE IF NOT EXISTS users(useruuid VARCHAR(36) NOT NULL, groupname VARCHAR (30) NOT NULL, expirationtime TIMESTAMP, PRIMARY KEY(useruuid, groupname))"),
+        CREATE_TABLE_SIGNS_V1("CREATE TABLE IF NOT EXISTS signs(world VARCHAR(255) NOT NULL, position BIGINT NOT NULL, useruuid VARCHAR(36) NOT NULL, PRIMARY KEY(world, position))"),
+        ADD_GROUP_IDS("ALTER TABLE servergroup DROP PRIMARY KEY, ADD COLUMN groupid INTEGER NOT NULL AUTO_INCREMENT, ADD PRIMARY KEY(groupid), ADD UNIQUE KEY groupname(groupname)"),
+        CREATE_TABLE_USERS_V2("CREATE TABLE IF NOT EXISTS users_v2(useruuid BINARY(16) NOT NULL, groupid INTEGER NOT NULL, expirationtime TIMESTAMP NULL, PRIMARY KEY(useruuid, groupid), KEY groupid(groupid), KEY expirationtime(expirationtime), CONSTRAINT users_groupid FOREIGN KEY(groupid) REFERENCES servergroup(groupid) ON DELETE CASCADE)"),
+        SELECT_MEMBERSHIP_CHUNK("SELECT useruuid, groupname FROM users ORDER BY useruuid, groupname LIMIT ?"),
+        COPY_MEMBERSHIPS("INSERT IGNORE INTO users_v2(useruuid, groupid, expirationtime) SELECT UNHEX(REPLACE(u.useruuid, '-', '')), g.groupid, u.expirationtime FROM users u JOIN servergroup g ON g.groupname = u.groupname WHERE (u.useruuid, u.groupname) <= (?, ?) AND u.useruuid REGEXP '^[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}$'"),
+        DELETE_MEMBERSHIPS_V1("DELETE FROM users WHERE (useruuid, groupname) <= (?, ?)"),
+        ADD_GROUP_KEYS("ALTER TABLE servergroup ADD COLUMN groupkey VARCHAR(30) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin AS (lower(groupname)) STORED, ADD UNIQUE KEY groupkey(groupkey), DROP KEY groupname"),
+        SELECT_GROUP_ID("SELECT groupid FROM servergroup WHERE groupkey = lower(?)"),
+        SELECT_DEFAULT_CHUNK("SELECT useruuid FROM users WHERE groupid = ? AND useruuid > ? ORDER BY useruuid LIMIT ?"),
+        DELETE_MEMBERSHIP("DELETE FROM users WHERE useruuid = ? AND groupid = ?"),
+        SWAP_USERS_TABLES("RENAME TABLE users TO users_v1, users_v2 TO users"),
+        DROP_TABLE_USERS_V1("DROP TABLE IF EXISTS users_v1");
+
+        /**
+         * The statement's SQL
+         */
+        private final String sql;
+
+        /**
+         * Initialises the statement with the given SQL
+         * @param sql the statement's SQL
+         */
+        Sql(String sql) {
+            this.sql = sql;
+        }
+
+        /**
+         * Returns the statement's SQL
+         * @return the statement's SQL
+         */
+        @Override
+        public String sql() {
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.schnatz.groupplugin;
+
+/**
+ * A row of the server group table
+ * @param id the group's id (referenced by the memberships)
+ * @param name the group's name
+ * @param prefix the group's prefix
+ * @param level the group's level
+ * @param colorCode the group's color code (0 to 15)
+ * @author Henry Schnatz
+ */
+public record ServerGroup(int id, String name, String prefix, int level, int colorCode) {
+    /**
+     * Returns the group's color char
+     * @return the group's color char
+     */
+    public char colorChar() {
+        // colorCode -> char
+        return Character.forDigit(colorCode, 16);
+    }
+}
@@ -0,0 +1,40 @@
+package com.schnatz.groupplugin;
+
+import com.schnatz.groupplugin.commands.CommandSign;
+import org.bukkit.Chunk;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+
+import java.util.Map;
+
+/**
+ * This class is used to apply the sign updates that were deferred because the signs' chunks were not loaded
+ * @author Henry Schnatz
+ */
+public class SignListener implements Listener {
+    /**
+     * The registry storing the signs
+     */
+    private final SignRegistry signRegistry;
+
+    /**
+     * Initialises the missing variables with the given values
+     * @param signRegistry the registry storing the signs
+     */
+    public SignListener(SignRegistry signRegistry) {
+        this.signRegistry = signRegistry;
+    }
+
+    /**
+     * Writes the pending group names on the signs of the loaded chunk
+     * @param e the {@link ChunkLoadEvent} triggered by a chunk being loaded
+     */
+    @EventHandler
+    public void onChunkLoad(ChunkLoadEvent e) {
+        Chunk chunk = e.getChunk();
+        Map<SignLocation, String> pendingTexts = signRegistry.takePendingTexts(chunk.getWorld().getName(), chunk.getX(), chunk.getZ());
+        for(Map.Entry<SignLocation, String> pendingText : pendingTexts.entrySet())
+            CommandSign.updateSign(signRegistry, chunk.getWorld(), pendingText.getKey(), pendingText.getValue());
+    }
+}
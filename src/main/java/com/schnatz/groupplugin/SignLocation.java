@@ -0,0 +1,63 @@
+package com.schnatz.groupplugin;
+
+/**
+ * The location of a registered sign, packed into a world id and one long holding the block coordinates
+ * @param world the id the {@link SignRegistry} assigned to the sign's world
+ * @param position the packed block coordinates (26 bits x, 26 bits z, 12 bits y)
+ * @author Henry Schnatz
+ */
+public record SignLocation(int world, long position) {
+    /**
+     * Packs the given block coordinates into one long
+     * @param x the block's x coordinate
+     * @param y the block's y coordinate
+     * @param z the block's z coordinate
+     * @return the packed block coordinates
+     */
+    public static long pack(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+
+    /**
+     * Packs the given chunk coordinates and world id into one long
+     * @param world the world's id
+     * @param chunkX the chunk's x coordinate
+     * @param chunkZ the chunk's z coordinate
+     * @return the packed chunk key
+     */
+    public static long chunkKey(int world, int chunkX, int chunkZ) {
+        return ((long) world << 48) | ((long) (chunkX & 0xFFFFFF) << 24) | (chunkZ & 0xFFFFFF);
+    }
+
+    /**
+     * Returns the block's x coordinate
+     * @return the block's x coordinate
+     */
+    public int getX() {
+        return (int) (position >> 38);
+    }
+
+    /**
+     * Returns the block's y coordinate
+     * @return the block's y coordinate
+     */
+    public int getY() {
+        return (int) (position << 52 >> 52);
+    }
+
+    /**
+     * Returns the block's z coordinate
+     * @return the block's z coordinate
+     */
+    public int getZ() {
+        return (int) (position << 26 >> 38);
+    }
+
+    /**
+     * Returns the key of the chunk the sign is placed in
+     * @return the key of the chunk the sign is placed in
+     */
+    public long getChunkKey() {
+        return chunkKey(world, getX() >> 4, getZ() >> 4);
+    }
+}
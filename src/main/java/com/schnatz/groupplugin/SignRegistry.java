@@ -0,0 +1,236 @@
+package com.schnatz.groupplugin;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * This class keeps track of all player signs. The signs are stored in the database, so they survive restarts,
+ * and are indexed in memory by the uuid of the player they belong to and by the chunk they are placed in.
+ * Only the indexes are guarded by the registry's lock, the database is written without holding it, so lookups never wait for the database.
+ * @author Henry Schnatz
+ */
+public class SignRegistry {
+    /**
+     * The database manager storing the signs
+     */
+    private final DatabaseManager databaseManager;
+    /**
+     * The names of the worlds signs are placed in, indexed by their id
+     */
+    private final List<String> worldNames;
+    /**
+     * A map mapping the names of the worlds signs are placed in on their id
+     */
+    private final Map<String, Integer> worldIds;
+    /**
+     * A map mapping every sign on the uuid of the player it belongs to
+     */
+    private final Map<SignLocation, String> owners;
+    /**
+     * A map mapping a player's uuid on the locations of his signs
+     */
+    private final Map<String, Set<SignLocation>> signsByUser;
+    /**
+     * A map mapping a chunk key on the locations of the signs placed in the chunk
+     */
+    private final Map<Long, Set<SignLocation>> signsByChunk;
+    /**
+     * A map mapping a chunk key on the group names that still have to be written on the chunk's signs (the chunk was not loaded)
+     */
+    private final Map<Long, Map<SignLocation, String>> pendingTexts;
+
+    /**
+     * Initialises an empty registry, the stored signs are added by the {@link DatabaseManager}
+     * @param databaseManager the database manager storing the signs
+     */
+    public SignRegistry(DatabaseManager databaseManager) {
+        this.databaseManager = databaseManager;
+        this.worldNames = new ArrayList<>();
+        this.worldIds = new HashMap<>();
+        this.owners = new HashMap<>();
+        this.signsByUser = new HashMap<>();
+        this.signsByChunk = new HashMap<>();
+        this.pendingTexts = new HashMap<>();
+    }
+
+    /**
+     * Stores a new sign belonging to the given player, an existing sign at the same location gets replaced
+     * @param uuid the uuid of the player the sign belongs to
+     * @param world the name of the sign's world
+     * @param x the sign's x coordinate
+     * @param y the sign's y coordinate
+     * @param z the sign's z coordinate
+     * @return the location of the new sign
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    public SignLocation add(String uuid, String world, int x, int y, int z) throws SQLException {
+        long position = SignLocation.pack(x, y, z);
+        databaseManager.addSign(uuid, world, position);
+        return register(uuid, world, position);
+    }
+
+    /**
+     * Removes the sign at the given location
+     * @param location the sign's location
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    public void remove(SignLocation location) throws SQLException {
+        databaseManager.removeSign(getWorldName(location), location.position());
+        synchronized (this) {
+            unregister(location);
+        }
+    }
+
+    /**
+     * Removes the sign at the given location from the registry right away and deletes it from the database asynchronously (used on the main thread)
+     * @param location the sign's location
+     * @return a future completed after the sign was deleted from the database or exceptionally with the thrown {@link SQLException}
+     */
+    public CompletableFuture<Void> removeAsync(SignLocation location) {
+        String world;
+        synchronized (this) {
+            world = getWorldName(location);
+            unregister(location);
+        }
+        return databaseManager.getAsyncDatabaseManager().run(() -> databaseManager.removeSign(world, location.position()));
+    }
+
+    /**
+     * Returns the locations of all signs belonging to the given player
+     * @param uuid the player's uuid
+     * @return the locations of all signs belonging to the given player (a copy)
+     */
+    public synchronized List<SignLocation> getSigns(String uuid) {
+        Set<SignLocation> signs = signsByUser.get(uuid);
+        return signs == null ? List.of() : List.copyOf(signs);
+    }
+
+    /**
+     * Returns the uuids of all players who have signs
+     * @return the uuids of all players who have signs (a copy)
+     */
+    public synchronized List<String> getOwners() {
+        return List.copyOf(signsByUser.keySet());
+    }
+
+    /**
+     * Checks whether the given player has signs
+     * @param uuid the player's uuid
+     * @return true if the player has at least one sign - false if the player has none
+     */
+    public synchronized boolean hasSigns(String uuid) {
+        return signsByUser.containsKey(uuid);
+    }
+
+    /**
+     * Returns the locations of all signs placed in the given chunk
+     * @param world the name of the chunk's world
+     * @param chunkX the chunk's x coordinate
+     * @param chunkZ the chunk's z coordinate
+     * @return the locations of all signs placed in the given chunk (a copy)
+     */
+    public synchronized List<SignLocation> getSigns(String world, int chunkX, int chunkZ) {
+        Integer worldId = worldIds.get(world);
+        if(worldId == null)
+            return List.of();
+        Set<SignLocation> signs = signsByChunk.get(SignLocation.chunkKey(worldId, chunkX, chunkZ));
+        return signs == null ? List.of() : List.copyOf(signs);
+    }
+
+    /**
+     * Remembers the group name that has to be written on the given sign once its chunk gets loaded, replacing an older one
+     * @param location the sign's location
+     * @param groupName the group name
+     */
+    public synchronized void setPendingText(SignLocation location, String groupName) {
+        if(owners.containsKey(location))
+            pendingTexts.computeIfAbsent(location.getChunkKey(), key -> new HashMap<>()).put(location, groupName);
+    }
+
+    /**
+     * Returns and forgets the group names that have to be written on the signs of the given chunk
+     * @param world the name of the chunk's world
+     * @param chunkX the chunk's x coordinate
+     * @param chunkZ the chunk's z coordinate
+     * @return a map mapping the signs' locations on their group names
+     */
+    public synchronized Map<SignLocation, String> takePendingTexts(String world, int chunkX, int chunkZ) {
+        Integer worldId = worldIds.get(world);
+        if(worldId == null)
+            return Map.of();
+        Map<SignLocation, String> texts = pendingTexts.remove(SignLocation.chunkKey(worldId, chunkX, chunkZ));
+        return texts == null ? Map.of() : texts;
+    }
+
+    /**
+     * Returns the uuid of the player the sign at the given location belongs to
+     * @param location the sign's location
+     * @return the player's uuid or null if there is no sign at the given location
+     */
+    public synchronized String getOwner(SignLocation location) {
+        return owners.get(location);
+    }
+
+    /**
+     * Returns the name of the world the sign at the given location is placed in
+     * @param location the sign's location
+     * @return the name of the sign's world
+     */
+    public synchronized String getWorldName(SignLocation location) {
+        return worldNames.get(location.world());
+    }
+
+    /**
+     * Returns the number of registered signs
+     * @return the number of registered signs
+     */
+    public synchronized int size() {
+        return owners.size();
+    }
+
+    // HELPER
+
+    /**
+     * Adds a stored sign to the indexes
+     * @param uuid the uuid of the player the sign belongs to
+     * @param world the name of the sign's world
+     * @param position the sign's packed coordinates
+     * @return the sign's location
+     */
+    synchronized SignLocation register(String uuid, String world, long position) {
+        Integer worldId = worldIds.get(world);
+        if(worldId == null) {
+            worldId = worldNames.size();
+            worldNames.add(world);
+            worldIds.put(world, worldId);
+        }
+        SignLocation location = new SignLocation(worldId, position);
+        unregister(location);
+        owners.put(location, uuid);
+        signsByUser.computeIfAbsent(uuid, key -> new HashSet<>()).add(location);
+        signsByChunk.computeIfAbsent(location.getChunkKey(), key -> new HashSet<>()).add(location);
+        return location;
+    }
+
+    /**
+     * Removes a sign from the indexes
+     * @param location the sign's location
+     */
+    private void unregister(SignLocation location) {
+        String uuid = owners.remove(location);
+        if(uuid == null)
+            return;
+        Set<SignLocation> userSigns = signsByUser.get(uuid);
+        userSigns.remove(location);
+        if(userSigns.isEmpty())
+            signsByUser.remove(uuid);
+        Set<SignLocation> chunkSigns = signsByChunk.get(location.getChunkKey());
+        chunkSigns.remove(location);
+        if(chunkSigns.isEmpty())
+            signsByChunk.remove(location.getChunkKey());
+        Map<SignLocation, String> texts = pendingTexts.get(location.getChunkKey());
+        if(texts != null && texts.remove(location) != null && texts.isEmpty())
+            pendingTexts.remove(location.getChunkKey());
+    }
+}
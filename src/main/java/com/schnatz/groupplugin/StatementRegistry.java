@@ -0,0 +1,243 @@
+package com.schnatz.groupplugin;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class executes the registered {@link NamedStatement}s, it is the only way the plugin talks to the database.
+ * Every statement is executed as {@link PreparedStatement}, the driver prepares it once per connection on the server and reuses it afterwards.
+ * @author Henry Schnatz
+ */
+public class StatementRegistry {
+    /**
+     * The pool the connections are borrowed from
+     */
+    private final ConnectionPool connectionPool;
+    /**
+     * A map mapping the registered statements on the number of their executions
+     */
+    private final Map<NamedStatement, LongAdder> executions;
+
+    /**
+     * Registers the given statements
+     * @param connectionPool the pool the connections are borrowed from
+     * @param statements the statements that may be executed
+     */
+    public StatementRegistry(ConnectionPool connectionPool, NamedStatement... statements) {
+        this.connectionPool = connectionPool;
+        Map<NamedStatement, LongAdder> executions = new LinkedHashMap<>();
+        for(NamedStatement statement : statements)
+            executions.put(statement, new LongAdder());
+        this.executions = Collections.unmodifiableMap(executions);
+    }
+
+    /**
+     * Executes the given query on a connection of its own
+     * @param statement the query
+     * @param handler reads the query's result
+     * @param parameters the query's parameters
+     * @param <T> the type of the read result
+     * @return the read result
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    public <T> T query(NamedStatement statement, ResultHandler<T> handler, Object... parameters) throws SQLException {
+        return execute(session -> session.query(statement, handler, parameters));
+    }
+
+    /**
+     * Executes the given update on a connection of its own
+     * @param statement the update
+     * @param parameters the update's parameters
+     * @return the number of changed rows
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    public int update(NamedStatement statement, Object... parameters) throws SQLException {
+        return execute(session -> session.update(statement, parameters));
+    }
+
+    /**
+     * Executes the given work on one connection in auto-commit mode
+     * @param work the work
+     * @param <T> the type of the work's result
+     * @return the work's result
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    public <T> T execute(Work<T> work) throws SQLException {
+        try(Connection connection = connectionPool.getConnection()) {
+            return work.run(new Session(connection));
+        }
+    }
+
+    /**
+     * Executes the given work on one connection in a single transaction, which is rolled back if the work throws an exception
+     * @param work the work
+     * @param <T> the type of the work's result
+     * @return the work's result
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    public <T> T transaction(Work<T> work) throws SQLException {
+        try(Connection connection = connectionPool.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                T result = work.run(new Session(connection));
+                connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of executions of every registered statement
+     * @return a map mapping the statements' names on the number of their executions
+     */
+    public Map<String, Long> getExecutionCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for(Map.Entry<NamedStatement, LongAdder> entry : executions.entrySet())
+            counts.put(entry.getKey().name(), entry.getValue().sum());
+        return counts;
+    }
+
+    // HELPER
+
+    /**
+     * Prepares the given statement and binds the given parameters
+     * @param connection the connection
+     * @param statement the statement
+     * @param parameters the parameters
+     * @return the prepared statement
+     * @throws SQLException if something goes wrong with the database connection
+     * @throws IllegalArgumentException if the statement is not registered
+     */
+    private PreparedStatement prepare(Connection connection, NamedStatement statement, Object... parameters) throws SQLException, IllegalArgumentException {
+        PreparedStatement preparedStatement = prepare(connection, statement);
+        bind(preparedStatement, parameters);
+        return preparedStatement;
+    }
+
+    /**
+     * Prepares the given statement
+     * @param connection the connection
+     * @param statement the statement
+     * @return the prepared statement
+     * @throws SQLException if something goes wrong with the database connection
+     * @throws IllegalArgumentException if the statement is not registered
+     */
+    private PreparedStatement prepare(Connection connection, NamedStatement statement) throws SQLException, IllegalArgumentException {
+        LongAdder counter = executions.get(statement);
+        if(counter == null)
+            throw new IllegalArgumentException("The given statement is not registered!");
+        counter.increment();
+        return connection.prepareStatement(statement.sql());
+    }
+
+    /**
+     * Binds the given parameters to the given statement
+     * @param preparedStatement the statement
+     * @param parameters the parameters
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    private static void bind(PreparedStatement preparedStatement, Object... parameters) throws SQLException {
+        for(int i = 0; i < parameters.length; i++)
+            preparedStatement.setObject(i + 1, parameters[i]);
+    }
+
+    /**
+     * The statements executed on one connection
+     */
+    public class Session {
+        /**
+         * The connection the statements are executed on
+         */
+        private final Connection connection;
+
+        /**
+         * Initialises the session
+         * @param connection the connection the statements are executed on
+         */
+        private Session(Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * Executes the given query
+         * @param statement the query
+         * @param handler reads the query's result
+         * @param parameters the query's parameters
+         * @param <T> the type of the read result
+         * @return the read result
+         * @throws SQLException if something goes wrong with the database connection
+         */
+        public <T> T query(NamedStatement statement, ResultHandler<T> handler, Object... parameters) throws SQLException {
+            try(PreparedStatement preparedStatement = prepare(connection, statement, parameters); ResultSet res = preparedStatement.executeQuery()) {
+                return handler.handle(res);
+            }
+        }
+
+        /**
+         * Executes the given update
+         * @param statement the update
+         * @param parameters the update's parameters
+         * @return the number of changed rows
+         * @throws SQLException if something goes wrong with the database connection
+         */
+        public int update(NamedStatement statement, Object... parameters) throws SQLException {
+            try(PreparedStatement preparedStatement = prepare(connection, statement, parameters)) {
+                return preparedStatement.executeUpdate();
+            }
+        }
+
+        /**
+         * Executes the given update once for every parameter row, sent to the server as one batch
+         * @param statement the update
+         * @param rows the parameters of every execution
+         * @return the number of changed rows of every execution
+         * @throws SQLException if something goes wrong with the database connection
+         */
+        public int[] batch(NamedStatement statement, List<Object[]> rows) throws SQLException {
+            try(PreparedStatement preparedStatement = prepare(connection, statement)) {
+                for(Object[] parameters : rows) {
+                    bind(preparedStatement, parameters);
+                    preparedStatement.addBatch();
+                }
+                return preparedStatement.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * Reads the result of a query
+     * @param <T> the type of the read result
+     */
+    @FunctionalInterface
+    public interface ResultHandler<T> {
+        /**
+         * Reads the given result
+         * @param res the query's result
+         * @return the read result
+         * @throws SQLException if something goes wrong with the database connection
+         */
+        T handle(ResultSet res) throws SQLException;
+    }
+
+    /**
+     * Work done on one connection
+     * @param <T> the type of the work's result
+     */
+    @FunctionalInterface
+    public interface Work<T> {
+        /**
+         * Does the work
+         * @param session the statements executed on the connection
+         * @return the work's result
+         * @throws SQLException if something goes wrong with the database connection
+         */
+        T run(Session session) throws SQLException;
+    }
+}
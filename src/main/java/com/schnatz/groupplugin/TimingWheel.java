@@ -0,0 +1,300 @@
+package com.schnatz.groupplugin;
+
+import org.bukkit.Bukkit;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * This class is a hierarchical timing wheel firing keys at their deadlines.
+ * Scheduling and cancelling take constant time, all keys due in the same tick are handed to the handler as one batch.
+ * Every level has {@link TimingWheel#WHEEL_SIZE} slots, each slot of a level spans a whole rotation of the level below.
+ * Keys are cascaded down to the next level when their slot comes up, until they get fired from the lowest level.
+ * @param <K> the type of the keys, every key is scheduled at most once
+ * @author Henry Schnatz
+ */
+public class TimingWheel<K> implements AutoCloseable {
+    /**
+     * The number of bits used for the slot index of one level
+     */
+    private static final int WHEEL_BITS = 6;
+    /**
+     * The number of slots of one level
+     */
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    /**
+     * The mask extracting the slot index of one level
+     */
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    /**
+     * The number of levels, with one second ticks the wheel spans 64^5 seconds (about 34 years)
+     */
+    private static final int LEVELS = 5;
+    /**
+     * The time in milliseconds one tick takes
+     */
+    private final long tickDuration;
+    /**
+     * The clock returning the current time in milliseconds since the epoch
+     */
+    private final LongSupplier clock;
+    /**
+     * The time in milliseconds the wheel was started at (tick 0)
+     */
+    private final long startTime;
+    /**
+     * The handler the keys due in the same tick are handed to
+     */
+    private final Consumer<List<K>> expirationHandler;
+    /**
+     * The slots of all levels, each slot holds a doubly linked list of its entries
+     */
+    private final Entry<K>[][] wheels;
+    /**
+     * A map mapping the scheduled keys on their entries, used to cancel or replace them
+     */
+    private final Map<K, Entry<K>> entries;
+    /**
+     * The executor advancing the wheel
+     */
+    private final ScheduledExecutorService ticker;
+    /**
+     * The last tick that was processed
+     */
+    private long currentTick;
+
+    /**
+     * Initialises an empty wheel and starts advancing it
+     * @param tickDuration the time in milliseconds one tick takes
+     * @param expirationHandler the handler the keys due in the same tick are handed to (called on the wheel's thread)
+     * @param threadName the name of the thread advancing the wheel
+     */
+    public TimingWheel(long tickDuration, Consumer<List<K>> expirationHandler, String threadName) {
+        this(tickDuration, expirationHandler, threadName, System::currentTimeMillis);
+    }
+
+    /**
+     * Initialises an empty wheel reading the time from the given clock and starts advancing it
+     * @param tickDuration the time in milliseconds one tick takes
+     * @param expirationHandler the handler the keys due in the same tick are handed to (called on the wheel's thread)
+     * @param threadName the name of the thread advancing the wheel
+     * @param clock the clock returning the current time in milliseconds since the epoch (the wheel only processes the ticks this clock has passed)
+     */
+    public TimingWheel(long tickDuration, Consumer<List<K>> expirationHandler, String threadName, LongSupplier clock) {
+        this.tickDuration = tickDuration;
+        this.clock = clock;
+        this.startTime = clock.getAsLong();
+        this.expirationHandler = expirationHandler;
+        this.wheels = newWheels();
+        this.entries = new HashMap<>();
+        this.currentTick = 0;
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ticker.scheduleAtFixedRate(this::advance, tickDuration, tickDuration, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Schedules the given key, replacing an earlier schedule of the same key. Deadlines in the past fire with the next tick.
+     * @param key the key
+     * @param deadline the time in milliseconds since the epoch the key is due at
+     */
+    public synchronized void schedule(K key, long deadline) {
+        Entry<K> entry = entries.remove(key);
+        if(entry != null)
+            unlink(entry);
+        long deadlineTick = Math.max(Math.floorDiv(deadline - startTime + tickDuration - 1, tickDuration), currentTick + 1);
+        entry = new Entry<>(key, deadlineTick);
+        entries.put(key, entry);
+        insert(entry);
+    }
+
+    /**
+     * Cancels the given key
+     * @param key the key
+     * @return true if the key was scheduled - false if it was not
+     */
+    public synchronized boolean cancel(K key) {
+        Entry<K> entry = entries.remove(key);
+        if(entry == null)
+            return false;
+        unlink(entry);
+        return true;
+    }
+
+    /**
+     * Returns whether the given key is scheduled
+     * @param key the key
+     * @return true if the key is scheduled - false if it is not
+     */
+    public synchronized boolean isScheduled(K key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Returns the number of scheduled keys
+     * @return the number of scheduled keys
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Stops advancing the wheel, the scheduled keys are not fired anymore
+     */
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+    }
+
+    // HELPER
+
+    /**
+     * Returns the empty slots of all levels
+     * @param <K> the type of the keys
+     * @return the empty slots of all levels
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <K> Entry<K>[][] newWheels() {
+        // generic arrays can not be created directly, the raw array only ever holds entries of the wheel's key type
+        Entry<K>[][] wheels = new Entry[LEVELS][WHEEL_SIZE];
+        return wheels;
+    }
+
+    /**
+     * Processes all ticks up to the current time and hands the keys due to the handler
+     */
+    private void advance() {
+        List<K> expired = new ArrayList<>();
+        synchronized (this) {
+            long targetTick = (clock.getAsLong() - startTime) / tickDuration;
+            while(currentTick < targetTick) {
+                currentTick++;
+                // higher levels first, their entries may land in a lower slot that is cascaded in the same tick
+                for(int level = LEVELS - 1; level > 0; level--) {
+                    if((currentTick & ((1L << (WHEEL_BITS * level)) - 1)) == 0)
+                        cascade(level, (int) ((currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK));
+                }
+                int slot = (int) (currentTick & WHEEL_MASK);
+                Entry<K> entry = wheels[0][slot];
+                wheels[0][slot] = null;
+                while(entry != null) {
+                    entries.remove(entry.key);
+                    expired.add(entry.key);
+                    entry = entry.next;
+                }
+            }
+        }
+        if(expired.isEmpty())
+            return;
+        try {
+            expirationHandler.accept(expired);
+        } catch (RuntimeException e) {
+            // an exception must never stop the wheel
+            if(Bukkit.getServer() != null)
+                Bukkit.getLogger().warning("Handling " + expired.size() + " expirations failed: " + e);
+        }
+    }
+
+    /**
+     * Moves all entries of the given slot into the lower levels
+     * @param level the slot's level
+     * @param slot the slot's index
+     */
+    private void cascade(int level, int slot) {
+        Entry<K> entry = wheels[level][slot];
+        wheels[level][slot] = null;
+        while(entry != null) {
+            Entry<K> next = entry.next;
+            entry.previous = null;
+            entry.next = null;
+            insert(entry);
+            entry = next;
+        }
+    }
+
+    /**
+     * Links the given entry into the slot matching its deadline
+     * @param entry the entry
+     */
+    private void insert(Entry<K> entry) {
+        long deadlineTick = entry.deadlineTick;
+        long delta = deadlineTick - currentTick;
+        int level = 0;
+        while(level < LEVELS - 1 && delta >= (1L << (WHEEL_BITS * (level + 1))))
+            level++;
+        if(level == LEVELS - 1)
+            // deadlines beyond the wheel's span wait in the farthest slot and are cascaded again later
+            deadlineTick = Math.min(deadlineTick, currentTick + (1L << (WHEEL_BITS * LEVELS)) - 1);
+        int slot = (int) ((deadlineTick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+        entry.level = level;
+        entry.slot = slot;
+        entry.previous = null;
+        entry.next = wheels[level][slot];
+        if(entry.next != null)
+            entry.next.previous = entry;
+        wheels[level][slot] = entry;
+    }
+
+    /**
+     * Removes the given entry from its slot
+     * @param entry the entry
+     */
+    private void unlink(Entry<K> entry) {
+        if(entry.previous != null)
+            entry.previous.next = entry.next;
+        else if(wheels[entry.level][entry.slot] == entry)
+            wheels[entry.level][entry.slot] = entry.next;
+        if(entry.next != null)
+            entry.next.previous = entry.previous;
+        entry.previous = null;
+        entry.next = null;
+    }
+
+    /**
+     * A scheduled key
+     * @param <K> the type of the key
+     */
+    private static class Entry<K> {
+        /**
+         * The scheduled key
+         */
+        private final K key;
+        /**
+         * The tick the key is due at
+         */
+        private final long deadlineTick;
+        /**
+         * The level of the slot the entry is linked into
+         */
+        private int level;
+        /**
+         * The index of the slot the entry is linked into
+         */
+        private int slot;
+        /**
+         * The previous entry of the same slot
+         */
+        private Entry<K> previous;
+        /**
+         * The next entry of the same slot
+         */
+        private Entry<K> next;
+
+        /**
+         * Initialises the entry
+         * @param key the scheduled key
+         * @param deadlineTick the tick the key is due at
+         */
+        private Entry(K key, long deadlineTick) {
+            this.key = key;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.schnatz.groupplugin.commands;
 
+import com.schnatz.groupplugin.AsyncDatabaseManager;
 import com.schnatz.groupplugin.DatabaseManager;
+import com.schnatz.groupplugin.MessageTemplate;
 import org.bukkit.Bukkit;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
@@ -8,7 +10,6 @@ import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 
-import java.sql.SQLException;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -36,15 +37,19 @@ public class CommandAddUserToGroup extends DatabaseCommand{
     /**
      * The message that gets displayed when there is no user with the given name
      */
-    private final String playerNotFoundMessage;
+    private final MessageTemplate playerNotFoundMessage;
     /**
      * The message that gets displayed when the given user is already member of the given group
      */
     private final String userAlreadyMemberOfGroupMessage;
+    /**
+     * The message that gets displayed when the group is the default group (its membership is implicit)
+     */
+    private final String defaultGroupMessage;
     /**
      * The message that gets displayed when the user was successfully added to the group
      */
-    private final String addedUserToGroupMessage;
+    private final MessageTemplate addedUserToGroupMessage;
     /**
      * The message that gets displayed when a time specification is negative
      */
@@ -76,6 +81,7 @@ public class CommandAddUserToGroup extends DatabaseCommand{
                 && config.isString("CommandAddUserToGroupPlayerNotFoundMessage")
                 && config.isString("CommandAddUserToGroupGroupNameDoesNotExistMessage")
                 && config.isString("CommandAddUserToGroupUserAlreadyMemberOfGroupMessage")
+                && config.isString("CommandAddUserToGroupDefaultGroupMessage")
                 && config.isString("CommandAddUserToGroupAddedUserToGroupMessage")
                 && config.isString("CommandAddUserToGroupNegativeTimeSpecificationMessage")
                 && config.isString("CommandAddUserToGroupIllegalTimeFormatMessage")
@@ -87,9 +93,10 @@ public class CommandAddUserToGroup extends DatabaseCommand{
         this.usageMessage = config.getString("CommandAddUserToGroupUsageMessage");
         this.sqlErrorMessage = config.getString("CommandAddUserToGroupSqlErrorMessage");
         this.groupNameDoesNotExistMessage = config.getString("CommandAddUserToGroupGroupNameDoesNotExistMessage");
-        this.playerNotFoundMessage = config.getString("CommandAddUserToGroupPlayerNotFoundMessage");
+        this.playerNotFoundMessage = compileMessage("CommandAddUserToGroupPlayerNotFoundMessage", "name");
         this.userAlreadyMemberOfGroupMessage = config.getString("CommandAddUserToGroupUserAlreadyMemberOfGroupMessage");
-        this.addedUserToGroupMessage = config.getString("CommandAddUserToGroupAddedUserToGroupMessage");
+        this.defaultGroupMessage = config.getString("CommandAddUserToGroupDefaultGroupMessage");
+        this.addedUserToGroupMessage = compileMessage("CommandAddUserToGroupAddedUserToGroupMessage", "user", "group");
         this.negativeTimeSpecificationMessage = config.getString("CommandAddUserToGroupNegativeTimeSpecificationMessage");
         this.illegalTimeFormatMessage = config.getString("CommandAddUserToGroupIllegalTimeFormatMessage");
         this.timeSpecificationNotANumberMessage = config.getString("CommandAddUserToGroupTimeSpecificationNotANumberMessage");
@@ -112,71 +119,61 @@ public class CommandAddUserToGroup extends DatabaseCommand{
         String userName = args[0];
         Player p = Bukkit.getPlayer(userName);
         if(p == null) {
-            sender.sendMessage(playerNotFoundMessage.replace("%name%", userName));
+            sender.sendMessage(playerNotFoundMessage.render(userName));
             return true;
         }
         String groupName = args[1];
         String playerUuid = p.getUniqueId().toString();
-        try {
-            if(args.length == 2)
-                databaseManager.addUserToGroup(playerUuid, groupName);
-            else {
-                String timeSpecification = args[2];
-                String[] times = timeSpecification.split(":");
-                if(times.length > 4) {
-                    sender.sendMessage(illegalTimeFormatMessage);
-                    return true;
-                }
-                int days;
-                int hours;
-                int minutes;
-                int seconds;
-                try{
-                    days = (times.length-4) < 0 ? 0 : Integer.parseInt(times[times.length-4]);
-                    hours = (times.length-3) < 0 ? 0 : Integer.parseInt(times[times.length-3]);
-                    minutes = (times.length-2) < 0 ? 0 : Integer.parseInt(times[times.length-2]);
-                    seconds = (times.length-1) < 0 ? 0 : Integer.parseInt(times[times.length-1]);
-                } catch (NumberFormatException e){
-                    sender.sendMessage(timeSpecificationNotANumberMessage);
-                    return true;
-                }
-                if(days < 0 || hours < 0 || minutes < 0 ||seconds < 0){
-                    sender.sendMessage(timeSpecificationNegativeMessage);
-                    return true;
-                }
-                databaseManager.addUserToGroup(playerUuid, groupName, days, hours, minutes, seconds);
+        AsyncDatabaseManager.DatabaseAction addUserToGroup;
+        if(args.length == 2)
+            addUserToGroup = () -> databaseManager.addUserToGroup(playerUuid, groupName);
+        else {
+            String timeSpecification = args[2];
+            String[] times = timeSpecification.split(":");
+            if(times.length > 4) {
+                sender.sendMessage(illegalTimeFormatMessage);
+                return true;
             }
-            sender.sendMessage(addedUserToGroupMessage.replace("%user%", userName).replace("%group%", groupName));
-            return true;
-        } catch (SQLException e) {
-            sender.sendMessage(sqlErrorMessage);
-            return true;
-        } catch (IllegalArgumentException e) {
-            sender.sendMessage(getErrorMessage(e));
-            return true;
+            int days;
+            int hours;
+            int minutes;
+            int seconds;
+            try{
+                days = (times.length-4) < 0 ? 0 : Integer.parseInt(times[times.length-4]);
+                hours = (times.length-3) < 0 ? 0 : Integer.parseInt(times[times.length-3]);
+                minutes = (times.length-2) < 0 ? 0 : Integer.parseInt(times[times.length-2]);
+                seconds = (times.length-1) < 0 ? 0 : Integer.parseInt(times[times.length-1]);
+            } catch (NumberFormatException e){
+                sender.sendMessage(timeSpecificationNotANumberMessage);
+                return true;
+            }
+            if(days < 0 || hours < 0 || minutes < 0 ||seconds < 0){
+                sender.sendMessage(timeSpecificationNegativeMessage);
+                return true;
+            }
+            addUserToGroup = () -> databaseManager.addUserToGroup(playerUuid, groupName, days, hours, minutes, seconds);
         }
+        runAsync(sender, addUserToGroup, throwable -> {
+            if(throwable == null)
+                sender.sendMessage(addedUserToGroupMessage.render(userName, groupName));
+            else if(throwable instanceof IllegalArgumentException e)
+                sender.sendMessage(getErrorMessage(e));
+            else
+                sender.sendMessage(sqlErrorMessage);
+        });
+        return true;
     }
 
     /**
      * {@inheritDoc}
      */
-    @SuppressWarnings("DuplicatedCode")
     @Override
     public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, String[] args) {
-        List<String> list = new LinkedList<>();
-        if(args.length == 1) {
-            for(Player p : Bukkit.getOnlinePlayers()) {
-                list.add(p.getName());
-            }
-        }
-        if(args.length == 2) {
-            try {
-                list.addAll(databaseManager.getAllGroups());
-            } catch (SQLException e) {
-                return list;
-            }
-        }
-        return list;
+        if(args.length == 1)
+            return completeOnlinePlayers(args[0]);
+        if(args.length == 2)
+            return completeGroups(args[1]);
+        return new LinkedList<>();
     }
 
     // HELPER
@@ -191,6 +188,7 @@ public class CommandAddUserToGroup extends DatabaseCommand{
             case "The given group does not exist!" -> groupNameDoesNotExistMessage;
             case "The given times must be bigger than 0!" -> negativeTimeSpecificationMessage;
             case "The given user is already member of the given group!" -> userAlreadyMemberOfGroupMessage;
+            case "The default group's membership is implicit!" -> defaultGroupMessage;
             default -> "Something went wrong!";
         };
     }
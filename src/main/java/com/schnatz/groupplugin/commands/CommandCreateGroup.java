@@ -1,12 +1,12 @@
 package com.schnatz.groupplugin.commands;
 
 import com.schnatz.groupplugin.DatabaseManager;
+import com.schnatz.groupplugin.MessageTemplate;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.jetbrains.annotations.NotNull;
 
-import java.sql.SQLException;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -54,7 +54,7 @@ public class CommandCreateGroup extends DatabaseCommand {
     /**
      * The message that gets displayed when the group was created successfully
      */
-    private final String groupCreatedMessage;
+    private final MessageTemplate groupCreatedMessage;
     /**
      * The message that gets displayed when the level can not be cast to an integer
      */
@@ -88,7 +88,7 @@ public class CommandCreateGroup extends DatabaseCommand {
         this.groupNameTooLongMessage = config.getString("CommandCreateGroupGroupNameTooLongMessage");
         this.prefixTooLongMessage = config.getString("CommandCreateGroupPrefixTooLongMessage");
         this.invalidColorCodeMessage = config.getString("CommandCreateGroupInvalidColorCodeMessage");
-        this.groupCreatedMessage = config.getString("CommandCreateGroupGroupCreatedMessage");
+        this.groupCreatedMessage = compileMessage("CommandCreateGroupGroupCreatedMessage", "name");
         this.levelMustBeIntegerMessage = config.getString("CommandCreateGroupLevelMustBeIntegerMessage");
     }
 
@@ -166,14 +166,14 @@ public class CommandCreateGroup extends DatabaseCommand {
      * @param colorCode the group's color code
      */
     private void createGroup(CommandSender sender, String name, String prefix, int level, int colorCode){
-        try {
-            databaseManager.createGroup(name, prefix, level, colorCode);
-            sender.sendMessage(groupCreatedMessage.replace("%name%", name));
-        } catch (SQLException e) {
-            sender.sendMessage(sqlErrorMessage);
-        } catch (IllegalArgumentException e) {
-            sender.sendMessage(getErrorMessage(e));
-        }
+        runAsync(sender, () -> databaseManager.createGroup(name, prefix, level, colorCode), throwable -> {
+            if(throwable == null)
+                sender.sendMessage(groupCreatedMessage.render(name));
+            else if(throwable instanceof IllegalArgumentException e)
+                sender.sendMessage(getErrorMessage(e));
+            else
+                sender.sendMessage(sqlErrorMessage);
+        });
     }
 
     /**
@@ -1,12 +1,12 @@
 package com.schnatz.groupplugin.commands;
 
 import com.schnatz.groupplugin.DatabaseManager;
+import com.schnatz.groupplugin.MessageTemplate;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.jetbrains.annotations.NotNull;
 
-import java.sql.SQLException;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -34,7 +34,7 @@ public class CommandDeleteGroup extends DatabaseCommand{
     /**
      * The message that gets displayed when the group was deleted successfully
      */
-    private final String groupDeletedMessage;
+    private final MessageTemplate groupDeletedMessage;
     /**
      * The message that gets displayed when trying to delete the default group
      */
@@ -59,7 +59,7 @@ public class CommandDeleteGroup extends DatabaseCommand{
         this.usageMessage = config.getString("CommandDeleteGroupUsageMessage");
         this.sqlErrorMessage = config.getString("CommandDeleteGroupSqlErrorMessage");
         this.groupNameDoesNotExistMessage = config.getString("CommandDeleteGroupGroupNameDoesNotExistMessage");
-        this.groupDeletedMessage = config.getString("CommandDeleteGroupGroupDeletedMessage");
+        this.groupDeletedMessage = compileMessage("CommandDeleteGroupGroupDeletedMessage", "name");
         this.deletingDefaultGroupMessage = config.getString("CommandDeleteGroupDeletingDefaultGroupMessage");
     }
 
@@ -85,15 +85,9 @@ public class CommandDeleteGroup extends DatabaseCommand{
      */
     @Override
     public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, String[] args) {
-        List<String> list = new LinkedList<>();
-        if(args.length == 1) {
-            try {
-                list.addAll(databaseManager.getAllGroups());
-            } catch (SQLException e) {
-                return list;
-            }
-        }
-        return list;
+        if(args.length == 1)
+            return completeGroups(args[0]);
+        return new LinkedList<>();
     }
 
 
@@ -105,14 +99,14 @@ public class CommandDeleteGroup extends DatabaseCommand{
      * @param name the group's name
      */
     private void deleteGroup(CommandSender sender, String name) {
-        try{
-            databaseManager.removeGroup(name);
-            sender.sendMessage(groupDeletedMessage.replace("%name%", name));
-        } catch (SQLException e) {
-            sender.sendMessage(sqlErrorMessage);
-        } catch (IllegalArgumentException e) {
-            sender.sendMessage(getErrorMessage(e));
-        }
+        runAsync(sender, () -> databaseManager.removeGroup(name), throwable -> {
+            if(throwable == null)
+                sender.sendMessage(groupDeletedMessage.render(name));
+            else if(throwable instanceof IllegalArgumentException e)
+                sender.sendMessage(getErrorMessage(e));
+            else
+                sender.sendMessage(sqlErrorMessage);
+        });
     }
 
     /**
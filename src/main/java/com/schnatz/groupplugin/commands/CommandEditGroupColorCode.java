@@ -1,12 +1,12 @@
 package com.schnatz.groupplugin.commands;
 
 import com.schnatz.groupplugin.DatabaseManager;
+import com.schnatz.groupplugin.MessageTemplate;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.jetbrains.annotations.NotNull;
 
-import java.sql.SQLException;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -26,7 +26,7 @@ public class CommandEditGroupColorCode extends DatabaseCommand {
     /**
      * The message that gets displayed when the color code was edited successfully
      */
-    private final String groupColorCodeEditedMessage;
+    private final MessageTemplate groupColorCodeEditedMessage;
     /**
      * The message that gets displayed when there is no group with the given name
      */
@@ -55,7 +55,7 @@ public class CommandEditGroupColorCode extends DatabaseCommand {
         this.insufficientPermissionMessage = config.getString("CommandEditGroupColorCodeInsufficientPermissionMessage");
         this.usageMessage = config.getString("CommandEditGroupColorCodeUsageMessage");
         this.sqlErrorMessage = config.getString("CommandEditGroupColorCodeSqlErrorMessage");
-        this.groupColorCodeEditedMessage = config.getString("CommandEditGroupColorCodeGroupColorCodeEditedMessage");
+        this.groupColorCodeEditedMessage = compileMessage("CommandEditGroupColorCodeGroupColorCodeEditedMessage", "group", "newcolorcode");
         this.groupNameDoesNotExistMessage = config.getString("CommandEditGroupColorCodeGroupNameDoesNotExistMessage");
         this.invalidColorCodeMessage = config.getString("CommandEditGroupColorCodeInvalidColorCodeMessage");
     }
@@ -94,15 +94,9 @@ public class CommandEditGroupColorCode extends DatabaseCommand {
      */
     @Override
     public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, String[] args) {
-        List<String> list = new LinkedList<>();
-        if (args.length == 1) {
-            try {
-                list.addAll(databaseManager.getAllGroups());
-            } catch (SQLException e) {
-                return list;
-            }
-        }
-        return list;
+        if(args.length == 1)
+            return completeGroups(args[0]);
+        return new LinkedList<>();
     }
 
     // HELPER
@@ -114,14 +108,14 @@ public class CommandEditGroupColorCode extends DatabaseCommand {
      * @param newColorCode the group's new color code
      */
     private void editGroupPrefix(CommandSender sender, String group, int newColorCode) {
-        try {
-            databaseManager.editGroupColorCode(group, newColorCode);
-            sender.sendMessage(groupColorCodeEditedMessage.replace("%group%", group).replace("%newcolorcode%", String.valueOf(Character.forDigit(newColorCode, 16))));
-        } catch (SQLException e) {
-            sender.sendMessage(sqlErrorMessage);
-        } catch (IllegalArgumentException e) {
-            sender.sendMessage(getErrorMessage(e));
-        }
+        runAsync(sender, () -> databaseManager.editGroupColorCode(group, newColorCode), throwable -> {
+            if(throwable == null)
+                sender.sendMessage(groupColorCodeEditedMessage.render(group, Character.forDigit(newColorCode, 16)));
+            else if(throwable instanceof IllegalArgumentException e)
+                sender.sendMessage(getErrorMessage(e));
+            else
+                sender.sendMessage(sqlErrorMessage);
+        });
     }
 
     /**
@@ -1,12 +1,12 @@
 package com.schnatz.groupplugin.commands;
 
 import com.schnatz.groupplugin.DatabaseManager;
+import com.schnatz.groupplugin.MessageTemplate;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.jetbrains.annotations.NotNull;
 
-import java.sql.SQLException;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -26,7 +26,7 @@ public class CommandEditGroupLevel extends DatabaseCommand {
     /**
      * The message that gets displayed when the level was edited successfully
      */
-    private final String groupLevelEditedMessage;
+    private final MessageTemplate groupLevelEditedMessage;
     /**
      * The message that gets displayed when there is no group with the given name
      */
@@ -55,7 +55,7 @@ public class CommandEditGroupLevel extends DatabaseCommand {
         this.insufficientPermissionMessage = config.getString("CommandEditGroupLevelInsufficientPermissionMessage");
         this.usageMessage = config.getString("CommandEditGroupLevelUsageMessage");
         this.sqlErrorMessage = config.getString("CommandEditGroupLevelSqlErrorMessage");
-        this.groupLevelEditedMessage = config.getString("CommandEditGroupLevelGroupLevelEditedMessage");
+        this.groupLevelEditedMessage = compileMessage("CommandEditGroupLevelGroupLevelEditedMessage", "group", "newlevel");
         this.groupNameDoesNotExistMessage = config.getString("CommandEditGroupLevelGroupNameDoesNotExistMessage");
         this.levelMustBeIntegerMessage = config.getString("CommandEditGroupLevelLevelMustBeIntegerMessage");
     }
@@ -89,15 +89,9 @@ public class CommandEditGroupLevel extends DatabaseCommand {
      */
     @Override
     public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, String[] args) {
-        List<String> list = new LinkedList<>();
-        if (args.length == 1) {
-            try {
-                list.addAll(databaseManager.getAllGroups());
-            } catch (SQLException e) {
-                return list;
-            }
-        }
-        return list;
+        if(args.length == 1)
+            return completeGroups(args[0]);
+        return new LinkedList<>();
     }
 
     // HELPER
@@ -109,14 +103,14 @@ public class CommandEditGroupLevel extends DatabaseCommand {
      * @param newLevel the group's new level
      */
     private void editGroupLevel(CommandSender sender, String group, int newLevel) {
-        try {
-            databaseManager.editGroupLevel(group, newLevel);
-            sender.sendMessage(groupLevelEditedMessage.replace("%group%", group).replace("%newlevel%", String.valueOf(newLevel)));
-        } catch (SQLException e) {
-            sender.sendMessage(sqlErrorMessage);
-        } catch (IllegalArgumentException e) {
-            sender.sendMessage(getErrorMessage(e));
-        }
+        runAsync(sender, () -> databaseManager.editGroupLevel(group, newLevel), throwable -> {
+            if(throwable == null)
+                sender.sendMessage(groupLevelEditedMessage.render(group, newLevel));
+            else if(throwable instanceof IllegalArgumentException e)
+                sender.sendMessage(getErrorMessage(e));
+            else
+                sender.sendMessage(sqlErrorMessage);
+        });
     }
 
     /**
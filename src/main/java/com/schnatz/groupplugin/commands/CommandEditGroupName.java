@@ -1,12 +1,12 @@
 package com.schnatz.groupplugin.commands;
 
 import com.schnatz.groupplugin.DatabaseManager;
+import com.schnatz.groupplugin.MessageTemplate;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.jetbrains.annotations.NotNull;
 
-import java.sql.SQLException;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -30,7 +30,7 @@ public class CommandEditGroupName  extends DatabaseCommand {
     /**
      * The message that gets displayed when the group's name was edited successfully
      */
-    private final String groupNameEditedMessage;
+    private final MessageTemplate groupNameEditedMessage;
     /**
      * The message that gets displayed when trying to edit the default group's name
      */
@@ -69,7 +69,7 @@ public class CommandEditGroupName  extends DatabaseCommand {
         this.insufficientPermissionMessage = config.getString("CommandEditGroupNameInsufficientPermissionMessage");
         this.usageMessage = config.getString("CommandEditGroupNameUsageMessage");
         this.sqlErrorMessage = config.getString("CommandEditGroupNameSqlErrorMessage");
-        this.groupNameEditedMessage = config.getString("CommandEditGroupNameGroupNameEditedMessage");
+        this.groupNameEditedMessage = compileMessage("CommandEditGroupNameGroupNameEditedMessage", "oldname", "newname");
         this.editingNameDefaultGroupMessage = config.getString("CommandEditGroupNameEditingNameDefaultGroupMessage");
         this.groupNameDoesNotExistMessage = config.getString("CommandEditGroupNameGroupNameDoesNotExistMessage");
         this.newGroupNameTooLongMessage = config.getString("CommandEditGroupNameNewGroupNameTooLongMessage");
@@ -98,15 +98,9 @@ public class CommandEditGroupName  extends DatabaseCommand {
      */
     @Override
     public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, String[] args) {
-        List<String> list = new LinkedList<>();
-        if (args.length == 1) {
-            try {
-                list.addAll(databaseManager.getAllGroups());
-            } catch (SQLException e) {
-                return list;
-            }
-        }
-        return list;
+        if(args.length == 1)
+            return completeGroups(args[0]);
+        return new LinkedList<>();
     }
 
     // HELPER
@@ -118,14 +112,14 @@ public class CommandEditGroupName  extends DatabaseCommand {
      * @param newName the group's new name
      */
     private void editGroupName(@NotNull CommandSender sender, @NotNull String oldName, @NotNull String newName) {
-        try {
-            databaseManager.editGroupName(oldName, newName);
-            sender.sendMessage(groupNameEditedMessage.replace("%oldname%", oldName).replace("%newname%", newName));
-        } catch (SQLException e) {
-            sender.sendMessage(sqlErrorMessage);
-        } catch (IllegalArgumentException e) {
-            sender.sendMessage(getErrorMessage(e));
-        }
+        runAsync(sender, () -> databaseManager.editGroupName(oldName, newName), throwable -> {
+            if(throwable == null)
+                sender.sendMessage(groupNameEditedMessage.render(oldName, newName));
+            else if(throwable instanceof IllegalArgumentException e)
+                sender.sendMessage(getErrorMessage(e));
+            else
+                sender.sendMessage(sqlErrorMessage);
+        });
     }
 
     /**
@@ -1,12 +1,12 @@
 package com.schnatz.groupplugin.commands;
 
 import com.schnatz.groupplugin.DatabaseManager;
+import com.schnatz.groupplugin.MessageTemplate;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.jetbrains.annotations.NotNull;
 
-import java.sql.SQLException;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -30,7 +30,7 @@ public class CommandEditGroupPrefix extends DatabaseCommand {
     /**
      * The message that gets displayed when the prefix was edited successfully
      */
-    private final String groupPrefixEditedMessage;
+    private final MessageTemplate groupPrefixEditedMessage;
     /**
      * The message that gets displayed when the given prefix is too long
      */
@@ -59,7 +59,7 @@ public class CommandEditGroupPrefix extends DatabaseCommand {
         this.insufficientPermissionMessage = config.getString("CommandEditGroupPrefixInsufficientPermissionMessage");
         this.usageMessage = config.getString("CommandEditGroupPrefixUsageMessage");
         this.sqlErrorMessage = config.getString("CommandEditGroupPrefixSqlErrorMessage");
-        this.groupPrefixEditedMessage = config.getString("CommandEditGroupPrefixGroupPrefixEditedMessage");
+        this.groupPrefixEditedMessage = compileMessage("CommandEditGroupPrefixGroupPrefixEditedMessage", "group", "newprefix");
         this.newGroupPrefixTooLongMessage = config.getString("CommandEditGroupPrefixNewGroupPrefixTooLongMessage");
         this.groupNameDoesNotExistMessage = config.getString("CommandEditGroupPrefixGroupNameDoesNotExistMessage");
     }
@@ -86,15 +86,9 @@ public class CommandEditGroupPrefix extends DatabaseCommand {
      */
     @Override
     public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, String[] args) {
-        List<String> list = new LinkedList<>();
-        if (args.length == 1) {
-            try {
-                list.addAll(databaseManager.getAllGroups());
-            } catch (SQLException e) {
-                return list;
-            }
-        }
-        return list;
+        if(args.length == 1)
+            return completeGroups(args[0]);
+        return new LinkedList<>();
     }
 
     // HELPER
@@ -106,14 +100,14 @@ public class CommandEditGroupPrefix extends DatabaseCommand {
      * @param newPrefix the group's new prefix
      */
     private void editGroupPrefix(CommandSender sender, String group, String newPrefix) {
-        try {
-            databaseManager.editGroupPrefix(group, newPrefix);
-            sender.sendMessage(groupPrefixEditedMessage.replace("%group%", group).replace("%newprefix%", newPrefix));
-        } catch (SQLException e) {
-            sender.sendMessage(sqlErrorMessage);
-        } catch (IllegalArgumentException e) {
-            sender.sendMessage(getErrorMessage(e));
-        }
+        runAsync(sender, () -> databaseManager.editGroupPrefix(group, newPrefix), throwable -> {
+            if(throwable == null)
+                sender.sendMessage(groupPrefixEditedMessage.render(group, newPrefix));
+            else if(throwable instanceof IllegalArgumentException e)
+                sender.sendMessage(getErrorMessage(e));
+            else
+                sender.sendMessage(sqlErrorMessage);
+        });
     }
 
     /**
@@ -1,6 +1,7 @@
 package com.schnatz.groupplugin.commands;
 
 import com.schnatz.groupplugin.DatabaseManager;
+import com.schnatz.groupplugin.MessageTemplate;
 import org.bukkit.Bukkit;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
@@ -12,8 +13,10 @@ import java.sql.SQLException;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This command can be used to get all groups a player is member of.
@@ -32,7 +35,7 @@ public class CommandGetGroups extends DatabaseCommand {
     /**
      * The message that gets displayed when the given player could not be found
      */
-    private final String playerNotFoundMessage;
+    private final MessageTemplate playerNotFoundMessage;
     /**
      * The message that gets displayed when something is wrong with the database connection
      */
@@ -40,31 +43,31 @@ public class CommandGetGroups extends DatabaseCommand {
     /**
      * The message that gets displayed before listing all groups the user is member of
      */
-    private final String memberOfFollowingGroupsMessage;
+    private final MessageTemplate memberOfFollowingGroupsMessage;
     /**
      * The message that gets displayed upon listing groups with unknown time left
      */
-    private final String memberOfGroupUnknownTimeMessage;
+    private final MessageTemplate memberOfGroupUnknownTimeMessage;
     /**
      * The message that gets displayed upon listing groups with unlimited time left
      */
-    private final String memberOfGroupForEverMessage;
+    private final MessageTemplate memberOfGroupForEverMessage;
     /**
      * The message that gets displayed upon listing groups with limited time including days, hours, minutes and seconds
      */
-    private final String memberOfGroupForTimesMessage;
+    private final MessageTemplate memberOfGroupForTimesMessage;
     /**
      * The message that gets displayed upon listing groups with limited time including hours, minutes and seconds
      */
-    private final String memberOfGroupForTimeNoDaysMessage;
+    private final MessageTemplate memberOfGroupForTimeNoDaysMessage;
     /**
      * The message that gets displayed upon listing groups with limited time including minutes and seconds
      */
-    private final String memberOfGroupForTimeNoHoursMessage;
+    private final MessageTemplate memberOfGroupForTimeNoHoursMessage;
     /**
      * The message that gets displayed upon listing groups with limited time including seconds
      */
-    private final String memberOfGroupForTimeNoMinutesMessage;
+    private final MessageTemplate memberOfGroupForTimeNoMinutesMessage;
 
     /**
      * Initialising the missing constants with the given values
@@ -89,15 +92,15 @@ public class CommandGetGroups extends DatabaseCommand {
 
         this.insufficientPermissionMessage = config.getString("CommandGetGroupsInsufficientPermissionMessage");
         this.usageMessage = config.getString("CommandGetGroupsUsageMessage");
-        this.playerNotFoundMessage = config.getString("CommandGetGroupsPlayerNotFoundMessage");
+        this.playerNotFoundMessage = compileMessage("CommandGetGroupsPlayerNotFoundMessage", "user");
         this.sqlErrorMessage = config.getString("CommandGetGroupsSqlErrorMessage");
-        this.memberOfFollowingGroupsMessage = config.getString("CommandGetGroupsMemberOfFollowingGroupsMessage");
-        this.memberOfGroupUnknownTimeMessage = config.getString("CommandGetGroupsMemberOfGroupUnknownTimeMessage");
-        this.memberOfGroupForEverMessage = config.getString("CommandGetGroupsMemberOfGroupForEverMessage");
-        this.memberOfGroupForTimesMessage = config.getString("CommandGetGroupsMemberOfGroupForTimesMessage");
-        this.memberOfGroupForTimeNoDaysMessage = config.getString("CommandGetGroupsMemberOfGroupForTimeNoDaysMessage");
-        this.memberOfGroupForTimeNoHoursMessage = config.getString("CommandGetGroupsMemberOfGroupForTimeNoHoursMessage");
-        this.memberOfGroupForTimeNoMinutesMessage = config.getString("CommandGetGroupsMemberOfGroupForTimeNoMinutesMessage");
+        this.memberOfFollowingGroupsMessage = compileMessage("CommandGetGroupsMemberOfFollowingGroupsMessage", "user");
+        this.memberOfGroupUnknownTimeMessage = compileMessage("CommandGetGroupsMemberOfGroupUnknownTimeMessage", "group");
+        this.memberOfGroupForEverMessage = compileMessage("CommandGetGroupsMemberOfGroupForEverMessage", "group");
+        this.memberOfGroupForTimesMessage = compileMessage("CommandGetGroupsMemberOfGroupForTimesMessage", "group", "days", "hours", "minutes", "seconds");
+        this.memberOfGroupForTimeNoDaysMessage = compileMessage("CommandGetGroupsMemberOfGroupForTimeNoDaysMessage", "group", "hours", "minutes", "seconds");
+        this.memberOfGroupForTimeNoHoursMessage = compileMessage("CommandGetGroupsMemberOfGroupForTimeNoHoursMessage", "group", "minutes", "seconds");
+        this.memberOfGroupForTimeNoMinutesMessage = compileMessage("CommandGetGroupsMemberOfGroupForTimeNoMinutesMessage", "group", "seconds");
     }
 
     /**
@@ -113,33 +116,62 @@ public class CommandGetGroups extends DatabaseCommand {
             sender.sendMessage(usageMessage);
             return true;
         }
-        List<String> groups;
         Player player = Bukkit.getPlayer(args[0]);
         if(player == null) {
-            sender.sendMessage(playerNotFoundMessage.replace("%user%", args[0]));
+            sender.sendMessage(playerNotFoundMessage.render(args[0]));
             return true;
         }
         String uuid = String.valueOf(player.getUniqueId());
-        try{
-            groups = databaseManager.getGroups(uuid);
-        } catch (SQLException e) {
-            sender.sendMessage(sqlErrorMessage);
-            return true;
-        }
-        sender.sendMessage(memberOfFollowingGroupsMessage.replace("%user%", args[0]));
-        for(String g : groups) {
-            LocalDateTime expirationTime;
-            try {
-                expirationTime = databaseManager.groupTimeLeft(uuid, g);
-            } catch (SQLException e) {
-                sender.sendMessage(memberOfGroupUnknownTimeMessage.replace("%group%", g));
-                continue;
+        supplyAsync(sender, () -> {
+            Map<String, LocalDateTime> expirationTimes = new LinkedHashMap<>();
+            for(String g : databaseManager.getGroups(uuid)) {
+                try {
+                    LocalDateTime expirationTime = databaseManager.groupTimeLeft(uuid, g);
+                    if(expirationTime != null)
+                        expirationTimes.put(g, expirationTime);
+                } catch (SQLException e) {
+                    // the expiration time is unknown
+                    expirationTimes.put(g, null);
+                }
             }
+            return expirationTimes;
+        }, (expirationTimes, throwable) -> {
+            if(throwable != null)
+                sender.sendMessage(sqlErrorMessage);
+            else
+                sendGroups(sender, args[0], expirationTimes);
+        });
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, String[] args) {
+        if(args.length == 1)
+            return completeOnlinePlayers(args[0]);
+        return new LinkedList<>();
+    }
+
+    // HELPER
+
+    /**
+     * Sends the given user's groups and the time left until they expire to the sender
+     * @param sender the person requesting the groups
+     * @param userName the user's name
+     * @param expirationTimes a map mapping the user's groups on their expiration time (null if it is unknown)
+     */
+    private void sendGroups(CommandSender sender, String userName, Map<String, LocalDateTime> expirationTimes) {
+        sender.sendMessage(memberOfFollowingGroupsMessage.render(userName));
+        for(String g : expirationTimes.keySet()) {
+            LocalDateTime expirationTime = expirationTimes.get(g);
             if(expirationTime == null) {
+                sender.sendMessage(memberOfGroupUnknownTimeMessage.render(g));
                 continue;
             }
             if(expirationTime.equals(LocalDateTime.MAX)) {
-                sender.sendMessage(memberOfGroupForEverMessage.replace("%group%", g));
+                sender.sendMessage(memberOfGroupForEverMessage.render(g));
                 continue;
             }
 
@@ -156,29 +188,14 @@ public class CommandGetGroups extends DatabaseCommand {
             hours = hours - days*24;
 
             if(days != 0){
-                sender.sendMessage(memberOfGroupForTimesMessage.replace("%group%", g).replace("%days%", String.valueOf(days)).replace("%hours%", String.valueOf(hours)).replace("%minutes%", String.valueOf(minutes)).replace("%seconds%", String.valueOf(seconds)));
+                sender.sendMessage(memberOfGroupForTimesMessage.render(g, days, hours, minutes, seconds));
             } else if(hours != 0){
-                sender.sendMessage(memberOfGroupForTimeNoDaysMessage.replace("%group%", g).replace("%hours%", String.valueOf(hours)).replace("%minutes%", String.valueOf(minutes)).replace("%seconds%", String.valueOf(seconds)));
+                sender.sendMessage(memberOfGroupForTimeNoDaysMessage.render(g, hours, minutes, seconds));
             } else if(minutes != 0){
-                sender.sendMessage(memberOfGroupForTimeNoHoursMessage.replace("%group%", g).replace("%minutes%", String.valueOf(minutes)).replace("%seconds%", String.valueOf(seconds)));
+                sender.sendMessage(memberOfGroupForTimeNoHoursMessage.render(g, minutes, seconds));
             } else {
-                sender.sendMessage(memberOfGroupForTimeNoMinutesMessage.replace("%group%", g).replace("%seconds%", String.valueOf(seconds)));
-            }
-        }
-        return true;
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, String[] args) {
-        List<String> list = new LinkedList<>();
-        if(args.length == 1) {
-            for(Player p : Bukkit.getOnlinePlayers()) {
-                list.add(p.getName());
+                sender.sendMessage(memberOfGroupForTimeNoMinutesMessage.render(g, seconds));
             }
         }
-        return list;
     }
 }
@@ -1,16 +1,19 @@
 package com.schnatz.groupplugin.commands;
 
+import com.schnatz.groupplugin.AsyncDatabaseManager;
 import com.schnatz.groupplugin.DatabaseManager;
+import com.schnatz.groupplugin.MessageTemplate;
+import com.schnatz.groupplugin.ServerGroup;
 import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.jetbrains.annotations.NotNull;
 
-import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Objects;
 import java.util.UUID;
 
 /**
@@ -33,15 +36,15 @@ public class CommandGroupInfo extends DatabaseCommand {
     /**
      * The message that gets displayed when showing information about a group
      */
-    private final String generalGroupInformationMessage;
+    private final MessageTemplate generalGroupInformationMessage;
     /**
      * The message that gets displayed when showing information about a group with no prefix
      */
-    private final String generalGroupInformationNoPrefixMessage;
+    private final MessageTemplate generalGroupInformationNoPrefixMessage;
     /**
      * The message that gets displayed when listing all users of a group
      */
-    private final String listGroupUsersMessage;
+    private final MessageTemplate listGroupUsersMessage;
     /**
      * The message that gets displayed when there is no group with the given name
      */
@@ -67,9 +70,9 @@ public class CommandGroupInfo extends DatabaseCommand {
         this.insufficientPermissionMessage = config.getString("CommandGroupInfoInsufficientPermissionMessage");
         this.usageMessage = config.getString("CommandGroupInfoUsageMessage");
         this.sqlErrorMessage = config.getString("CommandGroupInfoSqlErrorMessage");
-        this.generalGroupInformationMessage = config.getString("CommandGroupInfoGeneralGroupInformationMessage");
-        this.generalGroupInformationNoPrefixMessage = config.getString("CommandGroupInfoGeneralGroupInformationNoPrefixMessage");
-        this.listGroupUsersMessage = config.getString("CommandGroupInfoListGroupUsersMessage");
+        this.generalGroupInformationMessage = compileMessage("CommandGroupInfoGeneralGroupInformationMessage", "name", "prefix", "level", "colorcode", "usercount");
+        this.generalGroupInformationNoPrefixMessage = compileMessage("CommandGroupInfoGeneralGroupInformationNoPrefixMessage", "name", "level", "colorcode", "usercount");
+        this.listGroupUsersMessage = compileMessage("CommandGroupInfoListGroupUsersMessage", "name");
         this.groupNameDoesNotExistMessage = config.getString("CommandGroupInfoGroupNameDoesNotExistMessage");
     }
 
@@ -87,25 +90,46 @@ public class CommandGroupInfo extends DatabaseCommand {
             return true;
         }
         String groupName = args[0];
+        ServerGroup group;
         try {
-            String prefix = databaseManager.getGroupPrefix(groupName);
-            int level = databaseManager.getGroupLevel(groupName);
-            char colorCode = databaseManager.getGroupColorChar(groupName);
-            List<String> users = databaseManager.getGroupsUsers(groupName);
-            if(prefix.equals(""))
-                sender.sendMessage(generalGroupInformationNoPrefixMessage.replace("%name%", groupName).replace("%colorcode%", String.valueOf(colorCode)).replace("%level%", String.valueOf(level)).replace("%usercount%", String.valueOf(users.size())));
-            else
-                sender.sendMessage(generalGroupInformationMessage.replace("%name%", groupName).replace("%prefix%", prefix).replace("%colorcode%", String.valueOf(colorCode)).replace("%level%", String.valueOf(level)).replace("%usercount%", String.valueOf(users.size())));
-            for(String u : users)
-                sender.sendMessage(listGroupUsersMessage.replace("%name%", Objects.requireNonNull(Bukkit.getPlayer(UUID.fromString(u))).getName()));
-            return true;
-        } catch (SQLException e) {
-            sender.sendMessage(sqlErrorMessage);
-            return true;
+            // served from memory, only the group's users need the database
+            group = databaseManager.getServerGroup(groupName);
         } catch (IllegalArgumentException e) {
             sender.sendMessage(getErrorMessage(e));
             return true;
         }
+        String prefix = group.prefix();
+        int level = group.level();
+        char colorCode = group.colorChar();
+        AsyncDatabaseManager.DatabaseCall<List<String>> call;
+        if(databaseManager.isDefaultGroup(groupName)) {
+            // the default group's members are not stored, they are the known players without memberships
+            List<String> knownUuids = new ArrayList<>();
+            for(OfflinePlayer offlinePlayer : Bukkit.getOfflinePlayers())
+                knownUuids.add(offlinePlayer.getUniqueId().toString());
+            call = () -> databaseManager.getDefaultGroupsUsers(knownUuids);
+        } else
+            call = () -> databaseManager.getGroupsUsers(groupName);
+        supplyAsync(sender, call, (users, throwable) -> {
+            if(throwable instanceof IllegalArgumentException e) {
+                sender.sendMessage(getErrorMessage(e));
+                return;
+            }
+            if(throwable != null) {
+                sender.sendMessage(sqlErrorMessage);
+                return;
+            }
+            if(prefix.equals(""))
+                sender.sendMessage(generalGroupInformationNoPrefixMessage.render(groupName, level, colorCode, users.size()));
+            else
+                sender.sendMessage(generalGroupInformationMessage.render(groupName, prefix, level, colorCode, users.size()));
+            for(String u : users) {
+                // most of the listed users are offline
+                String name = Bukkit.getOfflinePlayer(UUID.fromString(u)).getName();
+                sender.sendMessage(listGroupUsersMessage.render(name != null ? name : u));
+            }
+        });
+        return true;
     }
 
     /**
@@ -113,15 +137,9 @@ public class CommandGroupInfo extends DatabaseCommand {
      */
     @Override
     public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, String[] args) {
-        List<String> list = new LinkedList<>();
-        if (args.length == 1) {
-            try {
-                list.addAll(databaseManager.getAllGroups());
-            } catch (SQLException e) {
-                return list;
-            }
-        }
-        return list;
+        if(args.length == 1)
+            return completeGroups(args[0]);
+        return new LinkedList<>();
     }
 
     // HELPER
@@ -1,6 +1,7 @@
 package com.schnatz.groupplugin.commands;
 
 import com.schnatz.groupplugin.DatabaseManager;
+import com.schnatz.groupplugin.MessageTemplate;
 import org.bukkit.Bukkit;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
@@ -8,7 +9,6 @@ import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 
-import java.sql.SQLException;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -36,15 +36,19 @@ public class CommandRemoveUserFromGroup extends DatabaseCommand{
     /**
      * The message that gets displayed when there is no user with the given name
      */
-    private final String playerNotFoundMessage;
+    private final MessageTemplate playerNotFoundMessage;
     /**
      * The message that gets displayed when the user is not member of the group
      */
     private final String userNotMemberOfGroupMessage;
+    /**
+     * The message that gets displayed when the group is the default group (its membership is implicit)
+     */
+    private final String defaultGroupMessage;
     /**
      * The message that gets displayed when the user was successfully removed from the group
      */
-    private final String removedUserFromGroupMessage;
+    private final MessageTemplate removedUserFromGroupMessage;
 
     /**
      * Initialising the missing constants with the given values
@@ -60,6 +64,7 @@ public class CommandRemoveUserFromGroup extends DatabaseCommand{
                 && config.isString("CommandRemoveUserFromGroupGroupNameDoesNotExistMessage")
                 && config.isString("CommandRemoveUserFromGroupPlayerNotFoundMessage")
                 && config.isString("CommandRemoveUserFromGroupUserNotMemberOfGroupMessage")
+                && config.isString("CommandRemoveUserFromGroupDefaultGroupMessage")
                 && config.isString("CommandRemoveUserFromGroupRemovedUserFromGroupMessage")))
             throw new IllegalStateException();
 
@@ -67,9 +72,10 @@ public class CommandRemoveUserFromGroup extends DatabaseCommand{
         this.usageMessage = config.getString("CommandRemoveUserFromGroupUsageMessage");
         this.sqlErrorMessage = config.getString("CommandRemoveUserFromGroupSqlErrorMessage");
         this.groupNameDoesNotExistMessage = config.getString("CommandRemoveUserFromGroupGroupNameDoesNotExistMessage");
-        this.playerNotFoundMessage = config.getString("CommandRemoveUserFromGroupPlayerNotFoundMessage");
+        this.playerNotFoundMessage = compileMessage("CommandRemoveUserFromGroupPlayerNotFoundMessage", "name");
         this.userNotMemberOfGroupMessage = config.getString("CommandRemoveUserFromGroupUserNotMemberOfGroupMessage");
-        this.removedUserFromGroupMessage = config.getString("CommandRemoveUserFromGroupRemovedUserFromGroupMessage");
+        this.defaultGroupMessage = config.getString("CommandRemoveUserFromGroupDefaultGroupMessage");
+        this.removedUserFromGroupMessage = compileMessage("CommandRemoveUserFromGroupRemovedUserFromGroupMessage", "user", "group");
     }
 
     /**
@@ -88,44 +94,32 @@ public class CommandRemoveUserFromGroup extends DatabaseCommand{
         String userName = args[0];
         Player p = Bukkit.getPlayer(userName);
         if(p == null) {
-            sender.sendMessage(playerNotFoundMessage.replace("%name%", userName));
+            sender.sendMessage(playerNotFoundMessage.render(userName));
             return true;
         }
         String groupName = args[1];
         String playerUuid = p.getUniqueId().toString();
-        try {
-            databaseManager.removeUserFromGroup(playerUuid, groupName);
-            sender.sendMessage(removedUserFromGroupMessage.replace("%user%", userName).replace("%group%", groupName));
-            return true;
-        } catch (SQLException e) {
-            sender.sendMessage(sqlErrorMessage);
-            return true;
-        } catch (IllegalArgumentException e) {
-            sender.sendMessage(getErrorMessage(e));
-            return true;
-        }
+        runAsync(sender, () -> databaseManager.removeUserFromGroup(playerUuid, groupName), throwable -> {
+            if(throwable == null)
+                sender.sendMessage(removedUserFromGroupMessage.render(userName, groupName));
+            else if(throwable instanceof IllegalArgumentException e)
+                sender.sendMessage(getErrorMessage(e));
+            else
+                sender.sendMessage(sqlErrorMessage);
+        });
+        return true;
     }
 
     /**
      * {@inheritDoc}
      */
-    @SuppressWarnings("DuplicatedCode")
     @Override
     public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, String[] args) {
-        List<String> list = new LinkedList<>();
-        if(args.length == 1) {
-            for(Player p : Bukkit.getOnlinePlayers()) {
-                list.add(p.getName());
-            }
-        }
-        if(args.length == 2) {
-            try {
-                list.addAll(databaseManager.getAllGroups());
-            } catch (SQLException e) {
-                return list;
-            }
-        }
-        return list;
+        if(args.length == 1)
+            return completeOnlinePlayers(args[0]);
+        if(args.length == 2)
+            return completeGroups(args[1]);
+        return new LinkedList<>();
     }
 
     // HELPER
@@ -139,6 +133,7 @@ public class CommandRemoveUserFromGroup extends DatabaseCommand{
         return switch (e.getMessage()) {
             case "The given group does not exist!" -> groupNameDoesNotExistMessage;
             case "The given user is not a member of the given group!" -> userNotMemberOfGroupMessage;
+            case "The default group's membership is implicit!" -> defaultGroupMessage;
             default -> "Something went wrong!";
         };
     }
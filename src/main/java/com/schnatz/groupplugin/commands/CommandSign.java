@@ -1,6 +1,9 @@
 package com.schnatz.groupplugin.commands;
 
+import com.schnatz.groupplugin.AsyncDatabaseManager;
 import com.schnatz.groupplugin.DatabaseManager;
+import com.schnatz.groupplugin.SignLocation;
+import com.schnatz.groupplugin.SignRegistry;
 import org.bukkit.*;
 import org.bukkit.block.Block;
 import org.bukkit.block.Sign;
@@ -10,7 +13,6 @@ import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 
-import java.sql.SQLException;
 import java.util.*;
 
 /**
@@ -42,26 +44,14 @@ public class CommandSign extends DatabaseCommand {
      * The message that gets displayed when a user could not be found
      */
     private final String userNotFoundMessage;
-    /**
-     * The message that gets displayed when the user is not member of a group
-     */
-    private final String notMemberOfGroupMessage;
     /**
      * The message taht gets displayed when the player is not standing on a solid block
      */
     private final String mustStandOnSolidBlockMessage;
-
     /**
-     * A map mapping a player's uuid on the list of his signs
+     * The registry storing the signs
      */
-    private static final Map<String, List<Block>> SIGNS;
-
-    /*
-     * initialising the static attributes
-     */
-    static {
-        SIGNS = new HashMap<>();
-    }
+    private final SignRegistry signRegistry;
 
     /**
      * Initialising the missing constants with the given values
@@ -77,7 +67,6 @@ public class CommandSign extends DatabaseCommand {
                 && config.isString("CommandSignSqlErrorMessage")
                 && config.isString("CommandSignUserNotFoundMessage")
                 && config.isString("CommandSignSignMustReplaceAirMessage")
-                && config.isString("CommandSignNotMemberOfGroupMessage")
                 && config.isString("CommandSignMustStandOnSolidBlockMessage")))
             throw new IllegalStateException();
 
@@ -87,8 +76,8 @@ public class CommandSign extends DatabaseCommand {
         this.sqlErrorMessage = config.getString("CommandSignSqlErrorMessage");
         this.userNotFoundMessage = config.getString("CommandSignUserNotFoundMessage");
         this.signMustReplaceAirMessage = config.getString("CommandSignSignMustReplaceAirMessage");
-        this.notMemberOfGroupMessage = config.getString("CommandSignNotMemberOfGroupMessage");
         this.mustStandOnSolidBlockMessage = config.getString("CommandSignMustStandOnSolidBlockMessage");
+        this.signRegistry = databaseManager.getSignRegistry();
     }
 
     /**
@@ -130,26 +119,35 @@ public class CommandSign extends DatabaseCommand {
             }
         }
 
-        try {
-            String highestGroupName = databaseManager.getUsersGroupWithHighestLevel(p.getUniqueId().toString());
-
+        String uuid = p.getUniqueId().toString();
+        String name = playerName;
+        supplyAsync(sender, () -> databaseManager.getUsersGroupWithHighestLevel(uuid), (highestGroupName, throwable) -> {
+            // every user has a group with the highest level (at least the default group), so only the database can fail
+            if(throwable != null) {
+                sender.sendMessage(sqlErrorMessage);
+                return;
+            }
+            // the block might have changed while the group was loaded
+            if(!block.getType().isAir()) {
+                sender.sendMessage(signMustReplaceAirMessage);
+                return;
+            }
             block.setType(Material.OAK_SIGN);
             Sign sign = (Sign) block.getState();
             sign.setLine(0, "name:");
-            sign.setLine(1, playerName);
+            sign.setLine(1, name);
             sign.setLine(2, "(highest) group:");
             sign.setLine(3, highestGroupName);
             sign.update();
-
-            addSign(block, p.getUniqueId().toString());
-            return true;
-        } catch (SQLException e) {
-            sender.sendMessage(sqlErrorMessage);
-            return true;
-        } catch (IllegalArgumentException e) {
-            sender.sendMessage(getErrorMessage(e));
-            return true;
-        }
+            // the sign is only registered once it exists, so refreshes in between do not drop it
+            runAsync(sender, () -> signRegistry.add(uuid, world.getName(), block.getX(), block.getY(), block.getZ()), registryThrowable -> {
+                if(registryThrowable != null) {
+                    block.setType(Material.AIR);
+                    sender.sendMessage(sqlErrorMessage);
+                }
+            });
+        });
+        return true;
     }
 
     /**
@@ -157,71 +155,47 @@ public class CommandSign extends DatabaseCommand {
      */
     @Override
     public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, String[] args) {
-        List<String> list = new LinkedList<>();
-        if(args.length == 1) {
-            for(Player p : Bukkit.getOnlinePlayers()) {
-                list.add(p.getName());
-            }
-            for(OfflinePlayer p : Bukkit.getOfflinePlayers()) {
-                list.add(p.getName());
-            }}
-        return list;
+        if(args.length == 1)
+            return completePlayers(args[0]);
+        return new LinkedList<>();
     }
 
     // HELPER
 
     /**
-     * Returns the message that should be displayed for the given exception
-     * @param e the given exception
-     * @return the message that should be displayed
-     */
-    private String getErrorMessage(Exception e) {
-        if(e.getMessage().equals("The given user is not member of a group!"))
-            return notMemberOfGroupMessage;
-        else
-            return "Something went wrong!";
-    }
-
-    /**
-     * Adds the sign to the list of all signs
-     * @param sign the sign to add
-     * @param uuid the uuid of the player belonging to the sign
-     */
-    private static void addSign(Block sign, String uuid) {
-        List<Block> playersSigns = SIGNS.get(uuid);
-        if(playersSigns == null) {
-            playersSigns = new LinkedList<>();
-            playersSigns.add(sign);
-            SIGNS.put(uuid, playersSigns);
-        } else {
-            playersSigns.add(sign);
-            SIGNS.replace(uuid, playersSigns);
-        }
-    }
-
-    /**
-     * Removes all existing signs
+     * Updates all signs belonging to the given player. Signs in unloaded chunks are updated once their chunk gets loaded.
+     * @param signRegistry the registry storing the signs
+     * @param uuid the player's uuid
+     * @param highestGroupName the name of the player's group with the highest level
      */
-    public static void removeAllSigns() {
-        for(List<Block> blocks : SIGNS.values()){
-            for(Block block : blocks) {
-                block.setType(Material.AIR);
-            }
+    public static void updateSigns(SignRegistry signRegistry, String uuid, String highestGroupName) {
+        for(SignLocation location : signRegistry.getSigns(uuid)) {
+            World world = Bukkit.getWorld(signRegistry.getWorldName(location));
+            // loading the chunk just to update a sign nobody sees would stall the server
+            if(world == null || !world.isChunkLoaded(location.getX() >> 4, location.getZ() >> 4))
+                signRegistry.setPendingText(location, highestGroupName);
+            else
+                updateSign(signRegistry, world, location, highestGroupName);
         }
-        SIGNS.clear();
     }
 
     /**
-     * Updates all signs belonging to the given player
+     * Updates the sign at the given location (its chunk must be loaded), signs that were destroyed get removed from the registry (the database is updated asynchronously)
+     * @param signRegistry the registry storing the signs
+     * @param world the sign's world
+     * @param location the sign's location
+     * @param highestGroupName the name of the player's group with the highest level
      */
-    public static void updateSigns(String uuid, String highestGroupName) {
-        List<Block> playersSigns = SIGNS.get(uuid);
-        if(playersSigns == null)
+    public static void updateSign(SignRegistry signRegistry, World world, SignLocation location, String highestGroupName) {
+        Block block = world.getBlockAt(location.getX(), location.getY(), location.getZ());
+        if(!(block.getState() instanceof Sign sign)) {
+            signRegistry.removeAsync(location).whenComplete((ignored, throwable) -> {
+                if(throwable != null)
+                    Bukkit.getLogger().warning(AsyncDatabaseManager.unwrap(throwable).getMessage());
+            });
             return;
-        for(Block block : playersSigns) {
-            Sign sign = (Sign) block.getState();
-            sign.setLine(3, highestGroupName);
-            sign.update();
         }
+        sign.setLine(3, highestGroupName);
+        sign.update();
     }
-}
\ No newline at end of file
+}
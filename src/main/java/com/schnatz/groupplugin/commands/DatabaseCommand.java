@@ -1,23 +1,60 @@
 package com.schnatz.groupplugin.commands;
 
+import com.schnatz.groupplugin.AsyncDatabaseManager;
 import com.schnatz.groupplugin.DatabaseManager;
+import com.schnatz.groupplugin.MessageTemplate;
+import org.bukkit.Bukkit;
 import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
- * This class features a {@link DatabaseManager} object allowing subclasses to use a given database
+ * This class features a {@link DatabaseManager} object allowing subclasses to use a given database.
+ * Subclasses validate a command's arguments on the main thread and hand the database work to {@link DatabaseCommand#supplyAsync}/{@link DatabaseCommand#runAsync},
+ * the commands of the same sender are executed one after another in the order they were issued.
  * @author Henry Schnatz
  */
 public abstract class DatabaseCommand implements CommandExecutor, TabCompleter {
+    /**
+     * A map mapping a sender's key on the last command the sender issued, the sender's next command waits for it
+     */
+    private static final Map<String, CompletableFuture<Void>> SENDER_QUEUES = new ConcurrentHashMap<>();
     /**
      * The database manager object
      */
     protected final DatabaseManager databaseManager;
+    /**
+     * The non-blocking facade of the database manager, its {@link AsyncDatabaseManager#mainThread()} executor hands results back to the main thread
+     */
+    protected final AsyncDatabaseManager asyncDatabaseManager;
     /**
      * The plugins config
      */
     protected final FileConfiguration config;
+    /**
+     * The time in milliseconds the database work of a command may take before the sender is told it is still running
+     */
+    private final long timeout;
+    /**
+     * The message that gets displayed when the database work of a command is still running after the timeout
+     */
+    private final String timeoutMessage;
+    /**
+     * The maximum number of tab completions offered at once
+     */
+    private final int tabCompletionLimit;
 
     /**
      * Initialising the missing constants with the given values
@@ -26,6 +63,104 @@ public abstract class DatabaseCommand implements CommandExecutor, TabCompleter {
      */
     public DatabaseCommand(DatabaseManager databaseManager, FileConfiguration config) {
         this.databaseManager = databaseManager;
+        this.asyncDatabaseManager = databaseManager.getAsyncDatabaseManager();
         this.config = config;
+        if(!(config.isInt("CommandTimeout")
+                && config.isString("CommandTimeoutMessage")
+                && config.isInt("TabCompletionLimit")))
+            throw new IllegalStateException();
+
+        this.timeout = config.getInt("CommandTimeout");
+        this.timeoutMessage = config.getString("CommandTimeoutMessage");
+        this.tabCompletionLimit = config.getInt("TabCompletionLimit");
+    }
+
+    /**
+     * Runs the given database call off the main thread and hands its outcome to the given callback on the main thread.
+     * If the call takes longer than the timeout the sender is told it is still running, the callback is called once the call finished anyway.
+     * The sender's next command waits for the call itself, not for the timeout.
+     * @param sender the sender who issued the command
+     * @param call the database call
+     * @param callback gets the result or the thrown exception ({@link java.sql.SQLException}/{@link IllegalArgumentException}) - exactly one of them is not null
+     * @param <T> the call's result type
+     */
+    protected <T> void supplyAsync(CommandSender sender, AsyncDatabaseManager.DatabaseCall<T> call, BiConsumer<? super T, ? super Throwable> callback) {
+        String senderKey = sender instanceof Player player ? player.getUniqueId().toString() : sender.getName();
+        CompletableFuture<Void> command = SENDER_QUEUES.compute(senderKey, (key, previous) -> {
+            // a failed predecessor must not block the sender's following commands
+            CompletableFuture<Void> start = previous == null ? CompletableFuture.completedFuture(null) : previous.exceptionally(throwable -> null);
+            return start.thenCompose(ignored -> {
+                        CompletableFuture<T> work = asyncDatabaseManager.supply(call);
+                        // the timeout only informs the sender, it neither cancels the work nor releases the sender's queue
+                        work.copy().orTimeout(timeout, TimeUnit.MILLISECONDS).whenCompleteAsync((result, throwable) -> {
+                            if(AsyncDatabaseManager.unwrap(throwable) instanceof TimeoutException)
+                                sender.sendMessage(timeoutMessage);
+                        }, asyncDatabaseManager.mainThread());
+                        return work;
+                    })
+                    .handleAsync((result, throwable) -> {
+                        callback.accept(result, AsyncDatabaseManager.unwrap(throwable));
+                        return null;
+                    }, asyncDatabaseManager.mainThread());
+        });
+        command.whenComplete((result, throwable) -> SENDER_QUEUES.remove(senderKey, command));
+    }
+
+    /**
+     * Runs the given database action off the main thread and hands its outcome to the given callback on the main thread
+     * @param sender the sender who issued the command
+     * @param action the database action
+     * @param callback gets the thrown exception or null if the action succeeded
+     * @see DatabaseCommand#supplyAsync(CommandSender, AsyncDatabaseManager.DatabaseCall, BiConsumer)
+     */
+    protected void runAsync(CommandSender sender, AsyncDatabaseManager.DatabaseAction action, Consumer<? super Throwable> callback) {
+        supplyAsync(sender, () -> {
+            action.run();
+            return null;
+        }, (result, throwable) -> callback.accept(throwable));
+    }
+
+    /**
+     * Compiles the config message with the given key, so it is parsed once instead of on every use
+     * @param key the message's config key
+     * @param placeholders the names of the message's placeholders (without '%'), in the order they are rendered with
+     * @return the compiled message
+     */
+    protected MessageTemplate compileMessage(String key, String... placeholders) {
+        return MessageTemplate.compile(key, config.getString(key), placeholders);
+    }
+
+    /**
+     * Returns the names of the groups starting with the given prefix (case-insensitive)
+     * @param prefix the typed prefix
+     * @return the names of the groups starting with the given prefix, at most {@link DatabaseCommand#tabCompletionLimit}
+     */
+    protected List<String> completeGroups(String prefix) {
+        return databaseManager.getGroupNameIndex().find(prefix, tabCompletionLimit);
+    }
+
+    /**
+     * Returns the names of the known players (online or offline) starting with the given prefix (case-insensitive)
+     * @param prefix the typed prefix
+     * @return the names of the known players starting with the given prefix, at most {@link DatabaseCommand#tabCompletionLimit}
+     */
+    protected List<String> completePlayers(String prefix) {
+        return databaseManager.getPlayerNameIndex().find(prefix, tabCompletionLimit);
+    }
+
+    /**
+     * Returns the names of the online players starting with the given prefix (case-insensitive)
+     * @param prefix the typed prefix
+     * @return the names of the online players starting with the given prefix, at most {@link DatabaseCommand#tabCompletionLimit}
+     */
+    protected List<String> completeOnlinePlayers(String prefix) {
+        List<String> names = new LinkedList<>();
+        for(Player p : Bukkit.getOnlinePlayers()) {
+            if(names.size() >= tabCompletionLimit)
+                break;
+            if(p.getName().regionMatches(true, 0, prefix, 0, prefix.length()))
+                names.add(p.getName());
+        }
+        return names;
     }
-}
\ No newline at end of file
+}
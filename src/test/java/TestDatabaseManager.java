@@ -1,7 +1,20 @@
+import com.schnatz.groupplugin.ConnectionPool;
 import com.schnatz.groupplugin.DatabaseManager;
+import com.schnatz.groupplugin.DatabaseSettings;
+import com.schnatz.groupplugin.EffectiveGroup;
+import com.schnatz.groupplugin.EffectiveGroupCache;
+import com.schnatz.groupplugin.Membership;
+import com.schnatz.groupplugin.PrefixTrie;
+import com.schnatz.groupplugin.SchemaMigrator;
+import com.schnatz.groupplugin.SignLocation;
+import com.schnatz.groupplugin.SignRegistry;
+import com.schnatz.groupplugin.TimingWheel;
+import org.bukkit.configuration.file.YamlConfiguration;
 import org.junit.jupiter.api.*;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.sql.*;
 import java.time.Duration;
 import java.time.LocalDateTime;
@@ -10,6 +23,8 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -205,16 +220,16 @@ public class TestDatabaseManager {
             }
         });
         assertDoesNotThrow(() -> {
-            try(PreparedStatement preparedStatement = connection.prepareStatement("SELECT useruuid FROM users WHERE groupname = 'Group1Renamed'")){
+            try(PreparedStatement preparedStatement = connection.prepareStatement("SELECT u.useruuid FROM users u JOIN servergroup g ON g.groupid = u.groupid WHERE g.groupname = 'Group1Renamed'")){
                 ResultSet res = preparedStatement.executeQuery();
                 List<String> actualUUIDs = new LinkedList<>();
                 while(res.next()){
-                    actualUUIDs.add(res.getString(1));
+                    actualUUIDs.add(readUuid(res.getBytes(1)));
                 }
                 assertEquals(actualUUIDs.size(), 3);
-                assertTrue(actualUUIDs.contains("useruuid4"));
-                assertTrue(actualUUIDs.contains("useruuid5"));
-                assertTrue(actualUUIDs.contains("useruuid6"));
+                assertTrue(actualUUIDs.contains(uuid(4)));
+                assertTrue(actualUUIDs.contains(uuid(5)));
+                assertTrue(actualUUIDs.contains(uuid(6)));
             }
         });
     }
@@ -255,6 +270,27 @@ public class TestDatabaseManager {
         assertThrows(IllegalArgumentException.class, () -> dbManager.editGroupName("DefaultGroup", "newName"));
     }
 
+    /**
+     * Tests the {@link DatabaseManager#editGroupName(String, String)} method with an existing new name
+     */
+    @Test
+    @DisplayName("editGroupName() - existing new name")
+    void testEditGroupName5() {
+        testConstructor1();
+        assertDoesNotThrow(() -> {
+            dbManager.createGroup("Group1", "Pref1", 1, 15);
+            dbManager.createGroup("Group2", "Pref2", 2, 14);
+            dbManager.addUserToGroup(uuid(1), "Group1");
+        });
+        assertThrows(IllegalArgumentException.class, () -> dbManager.editGroupName("Group1", "group2"));
+        assertDoesNotThrow(() -> {
+            assertEquals(dbManager.getGroups(uuid(1)), List.of("Group1"));
+            // changing the case only keeps the memberships
+            dbManager.editGroupName("Group1", "GROUP1");
+            assertEquals(dbManager.getGroups(uuid(1)), List.of("GROUP1"));
+        });
+    }
+
     /**
      * Tests the {@link DatabaseManager#editGroupPrefix(String, String)} method with an existing group
      */
@@ -407,13 +443,13 @@ public class TestDatabaseManager {
         testAddUserToGroup1();
         assertDoesNotThrow(() -> dbManager.createGroup("Group2", "g2pref", 1, 3));
         assertDoesNotThrow(() -> dbManager.createGroup("Group3", "g3pref", 2, 5));
-        assertDoesNotThrow(() -> dbManager.addUserToGroup("useruuid1", "Group2"));
+        assertDoesNotThrow(() -> dbManager.addUserToGroup(uuid(1), "Group2"));
         List<String> expectedUsersGroup1 = new LinkedList<>();
-        expectedUsersGroup1.add("useruuid4");
-        expectedUsersGroup1.add("useruuid5");
-        expectedUsersGroup1.add("useruuid6");
+        expectedUsersGroup1.add(uuid(4));
+        expectedUsersGroup1.add(uuid(5));
+        expectedUsersGroup1.add(uuid(6));
         List<String> expectedUsersGroup2 = new LinkedList<>();
-        expectedUsersGroup2.add("useruuid1");
+        expectedUsersGroup2.add(uuid(1));
 
         List<String> actualUsersGroup1 = assertDoesNotThrow(() -> dbManager.getGroupsUsers("Group1"));
         List<String> actualUsersGroup2 = assertDoesNotThrow(() -> dbManager.getGroupsUsers("Group2"));
@@ -464,29 +500,29 @@ public class TestDatabaseManager {
                 preparedStatement.executeUpdate();
             }
         });
-        assertDoesNotThrow(() -> dbManager.addUserToGroup("useruuid4", "Group1"));
-        assertDoesNotThrow(() -> dbManager.addUserToGroup("useruuid5", "Group1"));
-        assertDoesNotThrow(() -> dbManager.addUserToGroup("useruuid6", "Group1"));
+        assertDoesNotThrow(() -> dbManager.addUserToGroup(uuid(4), "Group1"));
+        assertDoesNotThrow(() -> dbManager.addUserToGroup(uuid(5), "Group1"));
+        assertDoesNotThrow(() -> dbManager.addUserToGroup(uuid(6), "Group1"));
         assertDoesNotThrow(() -> {
-            try(PreparedStatement preparedStatement = connection.prepareStatement("SELECT useruuid,expirationtime FROM users WHERE groupname = ?")){
+            try(PreparedStatement preparedStatement = connection.prepareStatement("SELECT u.useruuid,u.expirationtime FROM users u JOIN servergroup g ON g.groupid = u.groupid WHERE g.groupname = ?")){
                 preparedStatement.setString(1, "Group1");
                 ResultSet res = preparedStatement.executeQuery();
                 assertTrue(res.next());
                 List<String> remainingUsers = new LinkedList<>();
-                remainingUsers.add("useruuid4");
-                remainingUsers.add("useruuid5");
-                remainingUsers.add("useruuid6");
+                remainingUsers.add(uuid(4));
+                remainingUsers.add(uuid(5));
+                remainingUsers.add(uuid(6));
 
-                assertTrue(remainingUsers.contains(res.getString(1)));
-                remainingUsers.remove(res.getString(1));
+                assertTrue(remainingUsers.contains(readUuid(res.getBytes(1))));
+                remainingUsers.remove(readUuid(res.getBytes(1)));
                 assertNull(res.getObject(2));
                 assertTrue(res.next());
-                assertTrue(remainingUsers.contains(res.getString(1)));
-                remainingUsers.remove(res.getString(1));
+                assertTrue(remainingUsers.contains(readUuid(res.getBytes(1))));
+                remainingUsers.remove(readUuid(res.getBytes(1)));
                 assertNull(res.getObject(2));
                 assertTrue(res.next());
-                assertTrue(remainingUsers.contains(res.getString(1)));
-                remainingUsers.remove(res.getString(1));
+                assertTrue(remainingUsers.contains(readUuid(res.getBytes(1))));
+                remainingUsers.remove(readUuid(res.getBytes(1)));
                 assertNull(res.getObject(2));
                 assertFalse(res.next());
             }
@@ -502,11 +538,11 @@ public class TestDatabaseManager {
         testCreateGroup1();
         dbManager = assertDoesNotThrow(() -> new DatabaseManager(IPADRESS, PORT, USER, PASSWORD, DATABASE, "DefaultGroup", "defPrefix", 0, 3));
         connection = assertDoesNotThrow(() -> DriverManager.getConnection(URL_LONG, USER, PASSWORD));
-        assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup("useruuid1", "GroupNonExistent"));
-        assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup("useruuid2", "GroupNonExistent"));
-        assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup("useruuid3", "GroupNonExistent"));
+        assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup(uuid(1), "GroupNonExistent"));
+        assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup(uuid(2), "GroupNonExistent"));
+        assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup(uuid(3), "GroupNonExistent"));
         assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup("", "Group1"));
-        assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup("useruuid1", ""));
+        assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup(uuid(1), ""));
         assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup("", ""));
     }
 
@@ -530,36 +566,36 @@ public class TestDatabaseManager {
             }
         });
         LocalDateTime now = LocalDateTime.now(ZoneId.of("Europe/Berlin"));
-        assertDoesNotThrow(() -> dbManager.addUserToGroup("useruuid4", "Group1", 4,0,0,0));
-        assertDoesNotThrow(() -> dbManager.addUserToGroup("useruuid5", "Group1", 4, 3, 2, 1));
-        assertDoesNotThrow(() -> dbManager.addUserToGroup("useruuid6", "Group1", 366, 0, 0, 0));
+        assertDoesNotThrow(() -> dbManager.addUserToGroup(uuid(4), "Group1", 4,0,0,0));
+        assertDoesNotThrow(() -> dbManager.addUserToGroup(uuid(5), "Group1", 4, 3, 2, 1));
+        assertDoesNotThrow(() -> dbManager.addUserToGroup(uuid(6), "Group1", 366, 0, 0, 0));
         assertDoesNotThrow(() -> {
-            try(PreparedStatement preparedStatement = connection.prepareStatement("SELECT useruuid,expirationtime FROM users WHERE groupname = ?")){
+            try(PreparedStatement preparedStatement = connection.prepareStatement("SELECT u.useruuid,u.expirationtime FROM users u JOIN servergroup g ON g.groupid = u.groupid WHERE g.groupname = ?")){
                 preparedStatement.setString(1, "Group1");
                 ResultSet res = preparedStatement.executeQuery();
                 assertTrue(res.next());
                 Map<String, LocalDateTime> remainingEntries = new HashMap<>();
-                remainingEntries.put("useruuid4", now.plusDays(4).plusHours(0).plusMinutes(0).plusSeconds(0));
-                remainingEntries.put("useruuid5", now.plusDays(4).plusHours(3).plusMinutes(2).plusSeconds(1));
-                remainingEntries.put("useruuid6", now.plusDays(366).plusHours(0).plusMinutes(0).plusSeconds(0));
+                remainingEntries.put(uuid(4), now.plusDays(4).plusHours(0).plusMinutes(0).plusSeconds(0));
+                remainingEntries.put(uuid(5), now.plusDays(4).plusHours(3).plusMinutes(2).plusSeconds(1));
+                remainingEntries.put(uuid(6), now.plusDays(366).plusHours(0).plusMinutes(0).plusSeconds(0));
 
                 Duration duration;
-                assertTrue(remainingEntries.containsKey(res.getString(1)));
-                duration = Duration.between(remainingEntries.get(res.getString(1)), res.getTimestamp(2).toLocalDateTime());
+                assertTrue(remainingEntries.containsKey(readUuid(res.getBytes(1))));
+                duration = Duration.between(remainingEntries.get(readUuid(res.getBytes(1))), res.getTimestamp(2).toLocalDateTime());
                 assertTrue(duration.toSeconds() < treshold);
-                remainingEntries.remove(res.getString(1));
+                remainingEntries.remove(readUuid(res.getBytes(1)));
                 assertTrue(res.next());
 
-                assertTrue(remainingEntries.containsKey(res.getString(1)));
-                duration = Duration.between(remainingEntries.get(res.getString(1)), res.getTimestamp(2).toLocalDateTime());
+                assertTrue(remainingEntries.containsKey(readUuid(res.getBytes(1))));
+                duration = Duration.between(remainingEntries.get(readUuid(res.getBytes(1))), res.getTimestamp(2).toLocalDateTime());
                 assertTrue(duration.toSeconds() < treshold);
-                remainingEntries.remove(res.getString(1));
+                remainingEntries.remove(readUuid(res.getBytes(1)));
 
                 assertTrue(res.next());
-                assertTrue(remainingEntries.containsKey(res.getString(1)));
-                duration = Duration.between(remainingEntries.get(res.getString(1)), res.getTimestamp(2).toLocalDateTime());
+                assertTrue(remainingEntries.containsKey(readUuid(res.getBytes(1))));
+                duration = Duration.between(remainingEntries.get(readUuid(res.getBytes(1))), res.getTimestamp(2).toLocalDateTime());
                 assertTrue(duration.toSeconds() < treshold);
-                remainingEntries.remove(res.getString(1));
+                remainingEntries.remove(readUuid(res.getBytes(1)));
 
                 assertFalse(res.next());
             }
@@ -575,15 +611,15 @@ public class TestDatabaseManager {
         testCreateGroup1();
         dbManager = assertDoesNotThrow(() -> new DatabaseManager(IPADRESS, PORT, USER, PASSWORD, DATABASE, "DefaultGroup", "defPrefix", 0, 3));
         connection = assertDoesNotThrow(() -> DriverManager.getConnection(URL_LONG, USER, PASSWORD));
-        assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup("useruuid1", "Group1", -1, 0, 0, 0));
-        assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup("useruuid1", "Group1", 0, -1, 0, 0));
-        assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup("useruuid1", "Group1", 0, 0, -1, 0));
-        assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup("useruuid1", "Group1", 0, 0, 0, -1));
-        assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup("useruuid1", "GroupNonExistent", 4, 0, 0, 0));
-        assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup("useruuid2", "GroupNonExistent", 4, 0, 0, 0));
-        assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup("useruuid3", "GroupNonExistent", 4, 0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup(uuid(1), "Group1", -1, 0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup(uuid(1), "Group1", 0, -1, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup(uuid(1), "Group1", 0, 0, -1, 0));
+        assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup(uuid(1), "Group1", 0, 0, 0, -1));
+        assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup(uuid(1), "GroupNonExistent", 4, 0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup(uuid(2), "GroupNonExistent", 4, 0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup(uuid(3), "GroupNonExistent", 4, 0, 0, 0));
         assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup("", "Group1", 4, 0, 0, 0));
-        assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup("useruuid1", "", 4, 0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup(uuid(1), "", 4, 0, 0, 0));
         assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup("", "", 4, 0, 0, 0));
     }
 
@@ -598,16 +634,16 @@ public class TestDatabaseManager {
         connection = assertDoesNotThrow(() -> DriverManager.getConnection(URL_LONG, USER, PASSWORD));
         assertDoesNotThrow(() -> {
             dbManager.createGroup("Group2", "g2Pref", 0, 0);
-            dbManager.addUserToGroup("useruuid1", "Group1");
-            dbManager.addUserToGroup("useruuid1", "Group2");
-            dbManager.addUserToGroup("useruuid2", "Group1");
-            assertTrue(dbManager.getGroups("useruuid1").contains("Group1"));
-            assertTrue(dbManager.getGroups("useruuid1").contains("Group2"));
-            assertTrue(dbManager.getGroups("useruuid2").contains("Group1"));
-            dbManager.removeUserFromGroup("useruuid1", "Group1");
-            assertFalse(dbManager.getGroups("useruuid1").contains("Group1"));
-            assertTrue(dbManager.getGroups("useruuid1").contains("Group2"));
-            assertTrue(dbManager.getGroups("useruuid2").contains("Group1"));
+            dbManager.addUserToGroup(uuid(1), "Group1");
+            dbManager.addUserToGroup(uuid(1), "Group2");
+            dbManager.addUserToGroup(uuid(2), "Group1");
+            assertTrue(dbManager.getGroups(uuid(1)).contains("Group1"));
+            assertTrue(dbManager.getGroups(uuid(1)).contains("Group2"));
+            assertTrue(dbManager.getGroups(uuid(2)).contains("Group1"));
+            dbManager.removeUserFromGroup(uuid(1), "Group1");
+            assertFalse(dbManager.getGroups(uuid(1)).contains("Group1"));
+            assertTrue(dbManager.getGroups(uuid(1)).contains("Group2"));
+            assertTrue(dbManager.getGroups(uuid(2)).contains("Group1"));
         });
     }
 
@@ -620,10 +656,10 @@ public class TestDatabaseManager {
         testAddUserToGroup1();
         dbManager = assertDoesNotThrow(() -> new DatabaseManager(IPADRESS, PORT, USER, PASSWORD, DATABASE, "DefaultGroup", "defPrefix", 0, 3));
         connection = assertDoesNotThrow(() -> DriverManager.getConnection(URL_LONG, USER, PASSWORD));
-        assertThrows(IllegalArgumentException.class, () -> dbManager.removeUserFromGroup("useruuid1", "Group2"));
+        assertThrows(IllegalArgumentException.class, () -> dbManager.removeUserFromGroup(uuid(1), "Group2"));
         assertThrows(IllegalArgumentException.class, () -> dbManager.removeUserFromGroup("", "Group2"));
         assertThrows(IllegalArgumentException.class, () -> dbManager.removeUserFromGroup("", ""));
-        assertThrows(IllegalArgumentException.class, () -> dbManager.removeUserFromGroup("useruuid1", ""));
+        assertThrows(IllegalArgumentException.class, () -> dbManager.removeUserFromGroup(uuid(1), ""));
     }
 
     /**
@@ -636,24 +672,25 @@ public class TestDatabaseManager {
         dbManager = assertDoesNotThrow(() -> new DatabaseManager(IPADRESS, PORT, USER, PASSWORD, DATABASE, "DefaultGroup", "defPrefix", 0, 3));
         connection = assertDoesNotThrow(() -> DriverManager.getConnection(URL_LONG, USER, PASSWORD));
         assertDoesNotThrow(() -> {
-            List<String> actualUser4 = dbManager.getGroups("useruuid4");
+            List<String> actualUser4 = dbManager.getGroups(uuid(4));
             assertEquals(actualUser4.size(), 1);
             assertTrue(actualUser4.contains("Group1"));
             dbManager.createGroup("Group2", "g2pref", 0 , 0);
-            dbManager.addUserToGroup("useruuid4", "Group2");
-            actualUser4 = dbManager.getGroups("useruuid4");
+            dbManager.addUserToGroup(uuid(4), "Group2");
+            actualUser4 = dbManager.getGroups(uuid(4));
             assertEquals(actualUser4.size(), 2);
             assertTrue(actualUser4.contains("Group1"));
             assertTrue(actualUser4.contains("Group2"));
-            dbManager.removeUserFromGroup("useruuid4", "Group1");
-            actualUser4 = dbManager.getGroups("useruuid4");
+            dbManager.removeUserFromGroup(uuid(4), "Group1");
+            actualUser4 = dbManager.getGroups(uuid(4));
             assertEquals(actualUser4.size(), 1);
             assertTrue(actualUser4.contains("Group2"));
-            dbManager.removeUserFromGroup("useruuid4", "Group2");
-            actualUser4 = dbManager.getGroups("useruuid4");
-            assertTrue(actualUser4.isEmpty());
-            List<String> actualUser1 = dbManager.getGroups("useruuid1");
-            assertTrue(actualUser1.isEmpty());
+            dbManager.removeUserFromGroup(uuid(4), "Group2");
+            // users without memberships are implicit members of the default group
+            actualUser4 = dbManager.getGroups(uuid(4));
+            assertEquals(actualUser4, List.of("DefaultGroup"));
+            List<String> actualUser1 = dbManager.getGroups(uuid(1));
+            assertEquals(actualUser1, List.of("DefaultGroup"));
         });
 
         assertThrows(IllegalArgumentException.class, () -> dbManager.getGroups(""));
@@ -672,15 +709,15 @@ public class TestDatabaseManager {
         assertThrows(IllegalArgumentException.class, () -> dbManager.removeGroup(""));
         assertThrows(IllegalArgumentException.class, () -> dbManager.removeGroup("Group2"));
         assertDoesNotThrow(() -> {
-            assertTrue(dbManager.getGroups("useruuid4").contains("Group1"));
-            assertTrue(dbManager.getGroups("useruuid5").contains("Group1"));
-            assertTrue(dbManager.getGroups("useruuid6").contains("Group1"));
+            assertTrue(dbManager.getGroups(uuid(4)).contains("Group1"));
+            assertTrue(dbManager.getGroups(uuid(5)).contains("Group1"));
+            assertTrue(dbManager.getGroups(uuid(6)).contains("Group1"));
             dbManager.removeGroup("Group1");
-            assertFalse(dbManager.getGroups("useruuid4").contains("Group1"));
-            assertFalse(dbManager.getGroups("useruuid5").contains("Group1"));
-            assertFalse(dbManager.getGroups("useruuid6").contains("Group1"));
+            assertFalse(dbManager.getGroups(uuid(4)).contains("Group1"));
+            assertFalse(dbManager.getGroups(uuid(5)).contains("Group1"));
+            assertFalse(dbManager.getGroups(uuid(6)).contains("Group1"));
         });
-        assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup("useruuid1", "Group1"));
+        assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup(uuid(1), "Group1"));
     }
 
     /**
@@ -765,6 +802,656 @@ public class TestDatabaseManager {
         assertThrows(IllegalArgumentException.class, () -> dbManager.getGroupLevel("Group2"));
     }
 
+    /**
+     * Tests the {@link DatabaseManager#getUsersEffectiveGroup(String)} method
+     */
+    @Test
+    @DisplayName("getUsersEffectiveGroup()")
+    void testGetUsersEffectiveGroup() {
+        testAddUserToGroup1();
+        dbManager = assertDoesNotThrow(() -> new DatabaseManager(IPADRESS, PORT, USER, PASSWORD, DATABASE, "DefaultGroup", "defPrefix", 0, 3));
+        connection = assertDoesNotThrow(() -> DriverManager.getConnection(URL_LONG, USER, PASSWORD));
+        assertDoesNotThrow(() -> {
+            EffectiveGroup group = dbManager.getUsersEffectiveGroup(uuid(4));
+            assertEquals(group.name(), "Group1");
+            assertEquals(group.prefix(), "Pref1");
+            assertEquals(group.colorChar(), 'f');
+            assertEquals(group.level(), 1);
+            // the same level is resolved by the alphabetically first group name
+            dbManager.createGroup("AGroup", "aPref", 1, 2);
+            dbManager.addUserToGroup(uuid(4), "AGroup");
+            assertEquals(dbManager.getUsersGroupWithHighestLevel(uuid(4)), "AGroup");
+            assertEquals(dbManager.getUserPrefix(uuid(4)), "aPref");
+            assertEquals(dbManager.getUserColorChar(uuid(4)), '2');
+            // a higher level always wins
+            dbManager.editGroupLevel("Group1", 5);
+            assertEquals(dbManager.getUsersEffectiveGroup(uuid(4)).name(), "Group1");
+            // users without memberships get the default group
+            EffectiveGroup defaultGroup = dbManager.getUsersEffectiveGroup(uuid(1));
+            assertEquals(defaultGroup.name(), "DefaultGroup");
+            assertEquals(defaultGroup.prefix(), "defPrefix");
+            assertEquals(defaultGroup.colorChar(), '3');
+            assertEquals(dbManager.groupTimeLeft(uuid(1), "defaultgroup"), LocalDateTime.MAX);
+            assertNull(dbManager.groupTimeLeft(uuid(4), "DefaultGroup"));
+        });
+        assertThrows(IllegalArgumentException.class, () -> dbManager.getUsersEffectiveGroup(""));
+    }
+
+    /**
+     * Tests the {@link EffectiveGroupCache} of the {@link DatabaseManager}
+     */
+    @Test
+    @DisplayName("getEffectiveGroupCache()")
+    void testEffectiveGroupCache() {
+        testAddUserToGroup1();
+        dbManager = assertDoesNotThrow(() -> new DatabaseManager(IPADRESS, PORT, USER, PASSWORD, DATABASE, "DefaultGroup", "defPrefix", 0, 3));
+        EffectiveGroupCache cache = dbManager.getEffectiveGroupCache();
+        assertDoesNotThrow(() -> {
+            cache.track(uuid(4));
+            assertEquals(cache.getMisses(), 1);
+            assertEquals(cache.get(uuid(4)).name(), "Group1");
+            assertEquals(cache.getHits(), 1);
+            // changing the user's groups invalidates the entry
+            dbManager.createGroup("Group2", "g2pref", 2, 4);
+            dbManager.addUserToGroup(uuid(4), "Group2");
+            assertEquals(cache.get(uuid(4)).name(), "Group2");
+            assertEquals(cache.getMisses(), 2);
+            // untracked users are never cached
+            cache.get(uuid(5));
+            cache.get(uuid(5));
+            assertEquals(cache.getMisses(), 4);
+            cache.evict(uuid(4));
+            assertEquals(cache.getSize(), 0);
+        });
+    }
+
+    /**
+     * Tests that editing the default group refreshes the cached effective groups of its implicit members
+     */
+    @Test
+    @DisplayName("getEffectiveGroupCache() on default group edits")
+    void testEffectiveGroupCacheDefaultGroup() {
+        testAddUserToGroup1();
+        dbManager = assertDoesNotThrow(() -> new DatabaseManager(IPADRESS, PORT, USER, PASSWORD, DATABASE, "DefaultGroup", "defPrefix", 0, 3));
+        EffectiveGroupCache cache = dbManager.getEffectiveGroupCache();
+        assertDoesNotThrow(() -> {
+            // uuid(7) has no memberships and is an implicit member of the default group
+            cache.track(uuid(7));
+            cache.track(uuid(4));
+            assertEquals(cache.get(uuid(7)).prefix(), "defPrefix");
+            assertEquals(cache.getHits(), 1);
+            dbManager.editGroupPrefix("DefaultGroup", "newPref");
+            assertEquals(cache.get(uuid(7)).prefix(), "newPref");
+            dbManager.editGroupColorCode("DefaultGroup", 9);
+            assertEquals(cache.get(uuid(7)).colorChar(), '9');
+            dbManager.editGroupLevel("DefaultGroup", 7);
+            assertEquals(cache.get(uuid(7)).level(), 7);
+            // all online players are refreshed, the default group now outranks the group of uuid(4)
+            assertEquals(cache.get(uuid(4)).name(), "DefaultGroup");
+            assertEquals(cache.getMisses(), 6);
+        });
+    }
+
+    /**
+     * Tests the {@link SignRegistry} of the {@link DatabaseManager}
+     */
+    @Test
+    @DisplayName("getSignRegistry()")
+    void testSignRegistry() {
+        testConstructor1();
+        SignRegistry signRegistry = dbManager.getSignRegistry();
+        assertDoesNotThrow(() -> {
+            SignLocation location = signRegistry.add(uuid(1), "world", -17, -60, 33);
+            assertEquals(location.getX(), -17);
+            assertEquals(location.getY(), -60);
+            assertEquals(location.getZ(), 33);
+            signRegistry.add(uuid(1), "world_nether", 5, 70, 5);
+            assertEquals(signRegistry.getSigns(uuid(1)).size(), 2);
+            assertEquals(signRegistry.getSigns("world", -2, 2), List.of(location));
+            assertEquals(signRegistry.getOwner(location), uuid(1));
+            assertEquals(signRegistry.getOwners(), List.of(uuid(1)));
+        });
+        // the signs survive a restart
+        dbManager = assertDoesNotThrow(() -> new DatabaseManager(IPADRESS, PORT, USER, PASSWORD, DATABASE, "DefaultGroup", "defPrefix", 0, 3));
+        SignRegistry reloadedSignRegistry = dbManager.getSignRegistry();
+        assertEquals(reloadedSignRegistry.size(), 2);
+        List<SignLocation> signs = reloadedSignRegistry.getSigns("world", -2, 2);
+        assertEquals(signs.size(), 1);
+        assertDoesNotThrow(() -> reloadedSignRegistry.remove(signs.get(0)));
+        assertEquals(reloadedSignRegistry.getSigns(uuid(1)).size(), 1);
+        dbManager = assertDoesNotThrow(() -> new DatabaseManager(IPADRESS, PORT, USER, PASSWORD, DATABASE, "DefaultGroup", "defPrefix", 0, 3));
+        assertEquals(dbManager.getSignRegistry().size(), 1);
+        // the registry forgets the sign right away, the database follows asynchronously
+        SignRegistry asyncSignRegistry = dbManager.getSignRegistry();
+        CompletableFuture<Void> removal = asyncSignRegistry.removeAsync(asyncSignRegistry.getSigns(uuid(1)).get(0));
+        assertEquals(asyncSignRegistry.size(), 0);
+        assertFalse(asyncSignRegistry.hasSigns(uuid(1)));
+        assertEquals(asyncSignRegistry.getOwners(), List.of());
+        assertDoesNotThrow(() -> removal.join());
+        dbManager = assertDoesNotThrow(() -> new DatabaseManager(IPADRESS, PORT, USER, PASSWORD, DATABASE, "DefaultGroup", "defPrefix", 0, 3));
+        assertEquals(dbManager.getSignRegistry().size(), 0);
+    }
+
+    /**
+     * Tests the group name index of the {@link DatabaseManager}
+     */
+    @Test
+    @DisplayName("getGroupNameIndex()")
+    void testGroupNameIndex() {
+        testConstructor1();
+        PrefixTrie groupNameIndex = dbManager.getGroupNameIndex();
+        assertEquals(groupNameIndex.find("", 10), List.of("DefaultGroup"));
+        assertDoesNotThrow(() -> {
+            dbManager.createGroup("Group1", "g1pref", 1, 3);
+            dbManager.createGroup("Group2", "g2pref", 2, 4);
+            assertEquals(groupNameIndex.find("gro", 10), List.of("Group1", "Group2"));
+            assertEquals(groupNameIndex.find("GROUP", 1), List.of("Group1"));
+            dbManager.editGroupName("Group1", "Admin");
+            assertEquals(groupNameIndex.find("g", 10), List.of("Group2"));
+            assertEquals(groupNameIndex.find("a", 10), List.of("Admin"));
+            dbManager.removeGroup("group2");
+            assertEquals(groupNameIndex.find("g", 10), List.of());
+            assertEquals(groupNameIndex.size(), 2);
+        });
+    }
+
+    /**
+     * Tests the statement execution counts of the {@link DatabaseManager}
+     */
+    @Test
+    @DisplayName("getStatementExecutionCounts()")
+    void testStatementRegistry() {
+        testConstructor1();
+        assertDoesNotThrow(() -> {
+            long inserts = dbManager.getStatementExecutionCounts().get("INSERT_GROUP");
+            // quotes are bound as parameters and do not break the statements anymore
+            dbManager.createGroup("O'Group", "o'pref", 1, 3);
+            dbManager.addUserToGroup(uuid(1), "O'Group");
+            assertEquals(dbManager.getGroupsUsers("o'group"), List.of(uuid(1)));
+            assertEquals(dbManager.getGroupPrefix("O'Group"), "o'pref");
+            assertEquals((long) dbManager.getStatementExecutionCounts().get("INSERT_GROUP"), inserts + 1);
+            dbManager.removeGroup("O'Group");
+        });
+    }
+
+    /**
+     * Tests the migration of a database created before the schema version
+     */
+    @Test
+    @DisplayName("Constructor on legacy database")
+    void testSchemaMigration() {
+        connection = assertDoesNotThrow(() -> DriverManager.getConnection(URL_SHORT, USER, PASSWORD));
+        assertDoesNotThrow(() -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("DROP DATABASE IF EXISTS servergrouptest");
+                statement.executeUpdate("CREATE DATABASE servergrouptest");
+                statement.executeUpdate("CREATE TABLE servergrouptest.servergroup(groupname VARCHAR (30) NOT NULL, groupprefix VARCHAR (10) NOT NULL, grouplevel INTEGER NOT NULL, groupcolorcode INTEGER NOT NULL, PRIMARY KEY(groupname))");
+                statement.executeUpdate("CREATE TABLE servergrouptest.users(useruuid VARCHAR(36) NOT NULL, groupname VARCHAR (30) NOT NULL, expirationtime TIMESTAMP, PRIMARY KEY(useruuid, groupname))");
+                statement.executeUpdate("INSERT INTO servergrouptest.servergroup VALUES('DefaultGroup', 'defPrefix', 0, 3), ('Group1', 'Pref1', 1, 15)");
+            }
+            try (PreparedStatement preparedStatement = connection.prepareStatement("INSERT INTO servergrouptest.users VALUES(?, ?, NULL)")) {
+                // more memberships than fit into one chunk
+                for(int i = 0; i < 2500; i++) {
+                    preparedStatement.setString(1, uuid(i));
+                    preparedStatement.setString(2, i % 2 == 0 ? "Group1" : "DefaultGroup");
+                    preparedStatement.addBatch();
+                }
+                // a stored default group membership of a user with another group
+                preparedStatement.setString(1, uuid(2));
+                preparedStatement.setString(2, "DefaultGroup");
+                preparedStatement.addBatch();
+                // a membership of a user whose uuid is not valid
+                preparedStatement.setString(1, "useruuid0");
+                preparedStatement.setString(2, "Group1");
+                preparedStatement.addBatch();
+                // a membership of a group that does not exist anymore
+                preparedStatement.setString(1, uuid(0));
+                preparedStatement.setString(2, "GroupNonExistent");
+                preparedStatement.addBatch();
+                preparedStatement.executeBatch();
+            }
+        });
+        dbManager = assertDoesNotThrow(() -> new DatabaseManager(IPADRESS, PORT, USER, PASSWORD, DATABASE, "DefaultGroup", "defPrefix", 0, 3));
+        assertDoesNotThrow(() -> {
+            assertEquals(dbManager.getGroupsUsers("group1").size(), 1250);
+            // all default group rows are removed, users without other memberships are implicit members
+            assertEquals(dbManager.getGroupsUsers("DefaultGroup").size(), 0);
+            assertEquals(dbManager.getGroups(uuid(1)), List.of("DefaultGroup"));
+            assertEquals(dbManager.getGroups(uuid(0)), List.of("Group1"));
+            assertEquals(dbManager.getGroups(uuid(2)), List.of("Group1"));
+            assertNull(dbManager.groupTimeLeft(uuid(2), "DefaultGroup"));
+            assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup(uuid(1), "DefaultGroup"));
+            assertEquals(dbManager.getUsersGroupWithHighestLevel(uuid(2)), "Group1");
+            try (Statement statement = connection.createStatement()) {
+                // the uuids are stored as 16 bytes and the invalid uuid was dropped
+                ResultSet lengths = statement.executeQuery("SELECT MIN(LENGTH(useruuid)), MAX(LENGTH(useruuid)), COUNT(*) FROM servergrouptest.users");
+                assertTrue(lengths.next());
+                assertEquals(lengths.getInt(1), 16);
+                assertEquals(lengths.getInt(2), 16);
+                assertEquals(lengths.getInt(3), 1250);
+                ResultSet res = statement.executeQuery("SELECT version FROM servergrouptest.schema_version");
+                assertTrue(res.next());
+                assertEquals(res.getInt(1), SchemaMigrator.LATEST_VERSION);
+            }
+        });
+        // a migrated database is not migrated again
+        dbManager.close();
+        dbManager = assertDoesNotThrow(() -> new DatabaseManager(IPADRESS, PORT, USER, PASSWORD, DATABASE, "DefaultGroup", "defPrefix", 0, 3));
+        assertDoesNotThrow(() -> assertEquals(dbManager.getGroupsUsers("group1").size(), 1250));
+    }
+
+    /**
+     * Tests that a default group with a higher level than a user's other groups stays the user's group with the highest level, on a migrated and a new database
+     */
+    @Test
+    @DisplayName("Default group level above the other groups")
+    void testDefaultGroupLevel() {
+        connection = assertDoesNotThrow(() -> DriverManager.getConnection(URL_SHORT, USER, PASSWORD));
+        assertDoesNotThrow(() -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("DROP DATABASE IF EXISTS servergrouptest");
+                statement.executeUpdate("CREATE DATABASE servergrouptest");
+                statement.executeUpdate("CREATE TABLE servergrouptest.servergroup(groupname VARCHAR (30) NOT NULL, groupprefix VARCHAR (10) NOT NULL, grouplevel INTEGER NOT NULL, groupcolorcode INTEGER NOT NULL, PRIMARY KEY(groupname))");
+                statement.executeUpdate("CREATE TABLE servergrouptest.users(useruuid VARCHAR(36) NOT NULL, groupname VARCHAR (30) NOT NULL, expirationtime TIMESTAMP, PRIMARY KEY(useruuid, groupname))");
+                statement.executeUpdate("INSERT INTO servergrouptest.servergroup VALUES('DefaultGroup', 'defPrefix', 5, 3), ('Group1', 'Pref1', 1, 15), ('Group2', 'Pref2', 9, 14)");
+                // uuid(1) and uuid(2) joined before and got a stored default group membership
+                statement.executeUpdate("INSERT INTO servergrouptest.users VALUES('" + uuid(1) + "', 'DefaultGroup', NULL), ('" + uuid(1) + "', 'Group1', NULL), ('"
+                        + uuid(2) + "', 'DefaultGroup', NULL), ('" + uuid(2) + "', 'Group2', NULL)");
+            }
+        });
+        dbManager = assertDoesNotThrow(() -> new DatabaseManager(IPADRESS, PORT, USER, PASSWORD, DATABASE, "DefaultGroup", "defPrefix", 5, 3));
+        assertDoesNotThrow(() -> {
+            // the migration removed the default rows without changing the users' groups with the highest level
+            assertEquals(countMemberships(), 2);
+            assertEquals(dbManager.getGroups(uuid(1)), List.of("Group1"));
+            assertEquals(dbManager.getUsersGroupWithHighestLevel(uuid(1)), "DefaultGroup");
+            assertEquals(dbManager.getUserPrefix(uuid(1)), "defPrefix");
+            assertEquals(dbManager.getUsersGroupWithHighestLevel(uuid(2)), "Group2");
+            // memberships added after the migration follow the same rule
+            dbManager.addUserToGroup(uuid(3), "Group1");
+            assertEquals(dbManager.getUsersGroupWithHighestLevel(uuid(3)), "DefaultGroup");
+            dbManager.editGroupLevel("DefaultGroup", 1);
+            // same level, the alphabetically first name wins
+            assertEquals(dbManager.getUsersGroupWithHighestLevel(uuid(3)), "DefaultGroup");
+            dbManager.editGroupLevel("DefaultGroup", 0);
+            assertEquals(dbManager.getUsersGroupWithHighestLevel(uuid(3)), "Group1");
+            assertEquals(dbManager.getUsersEffectiveGroup(uuid(1)).prefix(), "Pref1");
+        });
+        dbManager.close();
+    }
+
+    /**
+     * Tests that the default group's membership is implicit on a new database: it is never stored and can not be added or removed
+     */
+    @Test
+    @DisplayName("Implicit default group membership")
+    void testImplicitDefaultGroup() {
+        testConstructor1();
+        assertDoesNotThrow(() -> {
+            assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup(uuid(1), "DefaultGroup"));
+            assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup(uuid(1), "defaultgroup", 1, 0, 0, 0));
+            assertThrows(IllegalArgumentException.class, () -> dbManager.removeUserFromGroup(uuid(1), "DefaultGroup"));
+            assertEquals(dbManager.getGroups(uuid(1)), List.of("DefaultGroup"));
+            assertEquals(dbManager.groupTimeLeft(uuid(1), "DefaultGroup"), LocalDateTime.MAX);
+            dbManager.createGroup("Group1", "Pref1", 1, 15);
+            dbManager.addUserToGroup(uuid(1), "Group1");
+            assertEquals(dbManager.getGroups(uuid(1)), List.of("Group1"));
+            assertNull(dbManager.groupTimeLeft(uuid(1), "DefaultGroup"));
+            dbManager.removeUserFromGroup(uuid(1), "Group1");
+            assertEquals(dbManager.getGroups(uuid(1)), List.of("DefaultGroup"));
+            assertEquals(dbManager.getGroupsUsers("DefaultGroup").size(), 0);
+            // the default group's members are the known users without memberships
+            dbManager.addUserToGroup(uuid(2), "Group1");
+            assertTrue(dbManager.isDefaultGroup("defaultgroup"));
+            assertFalse(dbManager.isDefaultGroup("Group1"));
+            assertEquals(dbManager.getDefaultGroupsUsers(List.of(uuid(1), uuid(2), uuid(3))), List.of(uuid(1), uuid(3)));
+            dbManager.removeUserFromGroup(uuid(2), "Group1");
+            try (Statement statement = connection.createStatement()) {
+                ResultSet res = statement.executeQuery("SELECT COUNT(*) FROM servergrouptest.users");
+                assertTrue(res.next());
+                assertEquals(res.getInt(1), 0);
+            }
+        });
+    }
+
+    /**
+     * Tests that the uuids are stored as 16 bytes and invalid uuids are rejected
+     */
+    @Test
+    @DisplayName("Binary uuids")
+    void testBinaryUuids() {
+        testConstructor1();
+        String uuid = "4f3e2d1c-0b0a-4998-8776-655443322110";
+        assertDoesNotThrow(() -> {
+            dbManager.createGroup("Group1", "Pref1", 1, 15);
+            dbManager.addUserToGroup(uuid, "Group1");
+            assertEquals(dbManager.getGroupsUsers("Group1"), List.of(uuid));
+            assertEquals(dbManager.getGroups(uuid.toUpperCase()), List.of("Group1"));
+            try (Statement statement = connection.createStatement()) {
+                ResultSet res = statement.executeQuery("SELECT HEX(useruuid) FROM servergrouptest.users");
+                assertTrue(res.next());
+                assertEquals(res.getString(1), "4F3E2D1C0B0A49988776655443322110");
+            }
+        });
+        assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup("useruuid1", "Group1"));
+        assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup("1-2-3-4-5", "Group1"));
+        assertThrows(IllegalArgumentException.class, () -> dbManager.removeUserFromGroup("4f3e2d1c-0b0a-4998-8776-65544332211g", "Group1"));
+        assertThrows(IllegalArgumentException.class, () -> dbManager.getGroups("useruuid1"));
+        assertThrows(IllegalArgumentException.class, () -> dbManager.getUsersEffectiveGroup("useruuid1"));
+    }
+
+    /**
+     * Tests that a handle of a returned connection stays closed when the connection is borrowed again
+     */
+    @Test
+    @DisplayName("ConnectionPool - one handle per borrowing")
+    void testConnectionPoolHandles() {
+        try (ConnectionPool pool = new ConnectionPool(URL_SHORT, USER, PASSWORD, 1, 1000, 600000, 0)) {
+            assertDoesNotThrow(() -> {
+                Connection first = pool.getConnection();
+                first.close();
+                assertTrue(first.isClosed());
+                Connection second = pool.getConnection();
+                assertNotSame(second, first);
+                assertTrue(first.isClosed());
+                assertThrows(SQLException.class, first::createStatement);
+                // closing the old handle again must not return the connection of the new borrower
+                first.close();
+                assertEquals(pool.getBorrowedConnections(), 1);
+                assertFalse(second.isClosed());
+                try (Statement statement = second.createStatement()) {
+                    assertTrue(statement.executeQuery("SELECT 1").next());
+                }
+                second.close();
+                assertEquals(pool.getBorrowedConnections(), 0);
+                assertEquals(pool.getIdleConnections(), 1);
+            });
+        }
+    }
+
+    /**
+     * Tests that expired memberships are scheduled again if removing them fails
+     */
+    @Test
+    @DisplayName("Expirations - retry after a failed removal")
+    @SuppressWarnings("unchecked")
+    void testExpirationRetry() {
+        testConstructor1();
+        assertDoesNotThrow(() -> {
+            dbManager.createGroup("Group1", "Pref1", 1, 15);
+            dbManager.addUserToGroup(uuid(1), "Group1", 1, 0, 0, 0);
+            Membership membership = new Membership(uuid(1), dbManager.getServerGroup("Group1").id());
+            Field expirationsField = dbManager.getClass().getDeclaredField("expirations");
+            expirationsField.setAccessible(true);
+            TimingWheel<Membership> expirations = (TimingWheel<Membership>) expirationsField.get(dbManager);
+            Method expireMemberships = dbManager.getClass().getDeclaredMethod("expireMemberships", List.class);
+            expireMemberships.setAccessible(true);
+            try (Statement statement = connection.createStatement()) {
+                // the membership expired, but its table can not be reached
+                statement.executeUpdate("UPDATE servergrouptest.users SET expirationtime = NOW() - INTERVAL 1 MINUTE");
+                statement.executeUpdate("RENAME TABLE servergrouptest.users TO servergrouptest.users_unreachable");
+            }
+            // the wheel drops the memberships it hands to the handler
+            expirations.cancel(membership);
+            expireMemberships.invoke(dbManager, List.of(membership));
+            assertTrue(expirations.isScheduled(membership));
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("RENAME TABLE servergrouptest.users_unreachable TO servergrouptest.users");
+            }
+            expirations.cancel(membership);
+            expireMemberships.invoke(dbManager, List.of(membership));
+            assertFalse(expirations.isScheduled(membership));
+            assertEquals(dbManager.getGroups(uuid(1)), List.of("DefaultGroup"));
+        });
+    }
+
+    /**
+     * Tests that group names are case-insensitive in all methods of the {@link DatabaseManager}
+     */
+    @Test
+    @DisplayName("Case-insensitive group names")
+    void testCaseInsensitiveGroupNames() {
+        testConstructor1();
+        assertDoesNotThrow(() -> {
+            dbManager.createGroup("Group1", "Pref1", 1, 15);
+            assertThrows(IllegalArgumentException.class, () -> dbManager.createGroup("GROUP1", "Pref1", 1, 15));
+            dbManager.addUserToGroup(uuid(1), "group1", 1, 0, 0, 0);
+            assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup(uuid(1), "GROUP1"));
+            assertEquals(dbManager.getGroups(uuid(1)), List.of("Group1"));
+            assertNotNull(dbManager.groupTimeLeft(uuid(1), "gRoUp1"));
+            assertNull(dbManager.groupTimeLeft(uuid(2), "group1"));
+            dbManager.removeUserFromGroup(uuid(1), "GROUP1");
+            assertEquals(dbManager.getGroups(uuid(1)), List.of("DefaultGroup"));
+            assertThrows(IllegalArgumentException.class, () -> dbManager.removeUserFromGroup(uuid(1), "group1"));
+        });
+    }
+
+    /**
+     * Tests that the membership mutators of the {@link DatabaseManager} need a single statement each
+     */
+    @Test
+    @DisplayName("Single-statement mutators")
+    void testSingleStatementMutators() {
+        testConstructor1();
+        assertDoesNotThrow(() -> {
+            dbManager.createGroup("Group1", "Pref1", 1, 15);
+            long before = countStatements();
+            dbManager.addUserToGroup(uuid(1), "Group1");
+            assertEquals(countStatements(), before + 1);
+            assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup(uuid(1), "group1"));
+            assertEquals(countStatements(), before + 2);
+            dbManager.removeUserFromGroup(uuid(1), "Group1");
+            assertEquals(countStatements(), before + 3);
+            assertThrows(IllegalArgumentException.class, () -> dbManager.removeUserFromGroup(uuid(1), "Group1"));
+            assertEquals(countStatements(), before + 4);
+        });
+    }
+
+    /**
+     * Tests that write-behind merges an add and a remove of the same membership into one change
+     */
+    @Test
+    @DisplayName("Write-behind - coalescing")
+    void testWriteBehindCoalescing() {
+        testConstructor1();
+        dbManager.close();
+        dbManager = assertDoesNotThrow(() -> new DatabaseManager(IPADRESS, PORT, USER, PASSWORD, DATABASE, "DefaultGroup", "defPrefix", 0, 3, writeBehindSettings()));
+        assertDoesNotThrow(() -> {
+            dbManager.createGroup("Group1", "Pref1", 1, 15);
+            long upserts = dbManager.getStatementExecutionCounts().get("UPSERT_MEMBERSHIP");
+            dbManager.addUserToGroup(uuid(1), "Group1");
+            dbManager.removeUserFromGroup(uuid(1), "Group1");
+            dbManager.addUserToGroup(uuid(2), "Group1");
+            dbManager.removeUserFromGroup(uuid(2), "Group1");
+            dbManager.addUserToGroup(uuid(2), "Group1", 1, 0, 0, 0);
+            assertEquals(dbManager.getPendingWrites(), 2);
+            assertEquals(countMemberships(), 0);
+            // only the latest change of each membership is written
+            assertEquals(dbManager.getGroups(uuid(1)), List.of("DefaultGroup"));
+            assertEquals(dbManager.getPendingWrites(), 0);
+            assertEquals(countMemberships(), 1);
+            assertNotEquals(dbManager.groupTimeLeft(uuid(2), "Group1"), LocalDateTime.MAX);
+            assertEquals((long) dbManager.getStatementExecutionCounts().get("UPSERT_MEMBERSHIP"), upserts + 1);
+        });
+        dbManager.close();
+    }
+
+    /**
+     * Tests that write-behind rejects adding existing and removing missing memberships like the immediate writes, stored and queued ones
+     */
+    @Test
+    @DisplayName("Write-behind - existing and missing memberships")
+    void testWriteBehindMembershipChecks() {
+        testConstructor1();
+        assertDoesNotThrow(() -> {
+            dbManager.createGroup("Group1", "Pref1", 1, 15);
+            dbManager.addUserToGroup(uuid(1), "Group1");
+        });
+        dbManager.close();
+        dbManager = assertDoesNotThrow(() -> new DatabaseManager(IPADRESS, PORT, USER, PASSWORD, DATABASE, "DefaultGroup", "defPrefix", 0, 3, writeBehindSettings()));
+        assertDoesNotThrow(() -> {
+            // stored memberships
+            assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup(uuid(1), "Group1"));
+            assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup(uuid(1), "Group1", 1, 0, 0, 0));
+            assertThrows(IllegalArgumentException.class, () -> dbManager.removeUserFromGroup(uuid(2), "Group1"));
+            assertEquals(dbManager.getPendingWrites(), 0);
+            // queued memberships
+            dbManager.addUserToGroup(uuid(2), "Group1");
+            assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup(uuid(2), "Group1"));
+            dbManager.removeUserFromGroup(uuid(1), "Group1");
+            assertThrows(IllegalArgumentException.class, () -> dbManager.removeUserFromGroup(uuid(1), "Group1"));
+            assertEquals(dbManager.getPendingWrites(), 2);
+            // the permanent membership was not turned into a timed one
+            assertEquals(dbManager.groupTimeLeft(uuid(2), "Group1"), LocalDateTime.MAX);
+            assertEquals(dbManager.getGroups(uuid(1)), List.of("DefaultGroup"));
+            assertEquals(dbManager.getPendingWrites(), 0);
+            assertThrows(IllegalArgumentException.class, () -> dbManager.removeUserFromGroup(uuid(1), "Group1"));
+            assertThrows(IllegalArgumentException.class, () -> dbManager.addUserToGroup(uuid(2), "Group1", 1, 0, 0, 0));
+        });
+        dbManager.close();
+    }
+
+    /**
+     * Tests that write-behind reads see the queued changes of the read users and groups
+     */
+    @Test
+    @DisplayName("Write-behind - reads see queued writes")
+    void testWriteBehindReads() {
+        testConstructor1();
+        dbManager.close();
+        dbManager = assertDoesNotThrow(() -> new DatabaseManager(IPADRESS, PORT, USER, PASSWORD, DATABASE, "DefaultGroup", "defPrefix", 0, 3, writeBehindSettings()));
+        assertDoesNotThrow(() -> {
+            dbManager.createGroup("Group1", "Pref1", 1, 15);
+            dbManager.addUserToGroup(uuid(1), "Group1");
+            assertEquals(countMemberships(), 0);
+            assertEquals(dbManager.getGroups(uuid(1)), List.of("Group1"));
+            dbManager.addUserToGroup(uuid(2), "Group1");
+            assertEquals(dbManager.getUsersEffectiveGroup(uuid(2)).name(), "Group1");
+            dbManager.addUserToGroup(uuid(3), "Group1", 1, 0, 0, 0);
+            assertNotNull(dbManager.groupTimeLeft(uuid(3), "Group1"));
+            dbManager.removeUserFromGroup(uuid(3), "Group1");
+            assertEquals(dbManager.getGroupsUsers("Group1").size(), 2);
+            assertEquals(countMemberships(), 2);
+        });
+        dbManager.close();
+    }
+
+    /**
+     * Tests that closing a write-behind {@link DatabaseManager} writes the queued changes
+     */
+    @Test
+    @DisplayName("Write-behind - flush on close")
+    void testWriteBehindClose() {
+        testConstructor1();
+        dbManager.close();
+        dbManager = assertDoesNotThrow(() -> new DatabaseManager(IPADRESS, PORT, USER, PASSWORD, DATABASE, "DefaultGroup", "defPrefix", 0, 3, writeBehindSettings()));
+        assertDoesNotThrow(() -> {
+            dbManager.createGroup("Group1", "Pref1", 1, 15);
+            dbManager.addUserToGroup(uuid(1), "Group1");
+            dbManager.addUserToGroup(uuid(2), "Group1");
+            assertEquals(countMemberships(), 0);
+        });
+        dbManager.close();
+        assertDoesNotThrow(() -> assertEquals(countMemberships(), 2));
+        dbManager = assertDoesNotThrow(() -> new DatabaseManager(IPADRESS, PORT, USER, PASSWORD, DATABASE, "DefaultGroup", "defPrefix", 0, 3));
+        assertDoesNotThrow(() -> assertEquals(dbManager.getGroups(uuid(2)), List.of("Group1")));
+    }
+
+    /**
+     * Tests that a queued membership of a group deleted in the meantime is dropped without losing the other queued changes
+     */
+    @Test
+    @DisplayName("Write-behind - group deleted while queued")
+    void testWriteBehindDeletedGroup() {
+        testConstructor1();
+        dbManager.close();
+        dbManager = assertDoesNotThrow(() -> new DatabaseManager(IPADRESS, PORT, USER, PASSWORD, DATABASE, "DefaultGroup", "defPrefix", 0, 3, writeBehindSettings()));
+        assertDoesNotThrow(() -> {
+            dbManager.createGroup("Group1", "Pref1", 1, 15);
+            dbManager.createGroup("Group2", "Pref2", 2, 14);
+            dbManager.addUserToGroup(uuid(1), "Group1");
+            dbManager.addUserToGroup(uuid(1), "Group2");
+            dbManager.addUserToGroup(uuid(2), "Group2");
+            long upserts = dbManager.getStatementExecutionCounts().get("UPSERT_MEMBERSHIP");
+            // another server deletes the group, the batch fails on the missing reference and is written row by row
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("DELETE FROM servergrouptest.servergroup WHERE groupname = 'Group1'");
+            }
+            assertEquals(dbManager.getGroups(uuid(1)), List.of("Group2"));
+            assertEquals(dbManager.getGroups(uuid(2)), List.of("Group2"));
+            assertEquals(dbManager.getPendingWrites(), 0);
+            assertEquals(countMemberships(), 2);
+            // the failed batch and one statement per queued membership
+            assertEquals((long) dbManager.getStatementExecutionCounts().get("UPSERT_MEMBERSHIP"), upserts + 4);
+        });
+        dbManager.close();
+    }
+
+    /**
+     * Returns the number of all statements the {@link DatabaseManager} executed
+     * @return the number of all statements the {@link DatabaseManager} executed
+     */
+    private long countStatements() {
+        long count = 0;
+        for(long executions : dbManager.getStatementExecutionCounts().values())
+            count += executions;
+        return count;
+    }
+
+    /**
+     * Returns the test uuid with the given number
+     * @param number the number (at most 12 digits)
+     * @return the test uuid with the given number
+     */
+    private static String uuid(long number) {
+        return String.format("00000000-0000-0000-0000-%012d", number);
+    }
+
+    /**
+     * Converts the given 16 stored bytes back into a uuid
+     * @param bytes the uuid's 16 bytes
+     * @return the uuid in its 36 character form
+     */
+    private static String readUuid(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong()).toString();
+    }
+
+    /**
+     * Returns the number of all stored memberships
+     * @return the number of all stored memberships
+     * @throws SQLException if something goes wrong with the database connection
+     */
+    private int countMemberships() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            ResultSet res = statement.executeQuery("SELECT COUNT(*) FROM servergrouptest.users");
+            res.next();
+            return res.getInt(1);
+        }
+    }
+
+    /**
+     * Returns settings enabling write-behind, the queued changes are only written when they are read or the manager is closed
+     * @return settings enabling write-behind
+     */
+    private DatabaseSettings writeBehindSettings() {
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("DatabasePoolSize", 10);
+        config.set("DatabasePoolConnectionTimeout", 5000);
+        config.set("DatabasePoolIdleTimeout", 600000);
+        config.set("DatabasePoolLeakDetectionThreshold", 10000);
+        config.set("DatabaseExecutorThreads", 4);
+        config.set("DatabaseExecutorVirtualThreads", false);
+        config.set("DatabaseExpirationHorizon", 3600000);
+        config.set("DatabaseRefreshTickBudget", 2000);
+        config.set("DatabaseMigrationChunkSize", 1000);
+        config.set("DatabaseWriteBehind", true);
+        config.set("DatabaseWriteBehindCapacity", 10000);
+        config.set("DatabaseWriteBehindBatchSize", 10000);
+        config.set("DatabaseWriteBehindInterval", 3600000);
+        return new DatabaseSettings(config);
+    }
+
     @AfterAll
     void closeConnection() {
         assertDoesNotThrow(() -> connection.close());
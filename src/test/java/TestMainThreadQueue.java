@@ -0,0 +1,38 @@
+import com.schnatz.groupplugin.MainThreadQueue;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is used to test class {@link MainThreadQueue}
+ * @author Henry Schnatz
+ */
+public class TestMainThreadQueue {
+    /**
+     * Tests that tasks with the same key replace each other
+     */
+    @Test
+    @DisplayName("Tasks with the same key are merged")
+    void testMerge() {
+        MainThreadQueue queue = new MainThreadQueue(2000);
+        queue.submit("uuid1", () -> {});
+        queue.submit("uuid2", () -> {});
+        queue.submit("uuid1", () -> {});
+        assertEquals(queue.getQueueDepth(), 2);
+        queue.close();
+    }
+
+    /**
+     * Tests that closing the queue drops the pending tasks and the tasks submitted afterwards
+     */
+    @Test
+    @DisplayName("Closed queue drops tasks")
+    void testClose() {
+        MainThreadQueue queue = new MainThreadQueue(2000);
+        queue.submit("uuid1", () -> {});
+        queue.close();
+        assertEquals(queue.getQueueDepth(), 0);
+        queue.submit("uuid2", () -> {});
+        assertEquals(queue.getQueueDepth(), 0);
+    }
+}
@@ -0,0 +1,123 @@
+import com.schnatz.groupplugin.MembershipWriteQueue;
+import org.junit.jupiter.api.*;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is used to test class {@link MembershipWriteQueue}
+ * @author Henry Schnatz
+ */
+public class TestMembershipWriteQueue {
+    /**
+     * The maximum number of pending changes
+     */
+    private static final int CAPACITY = 2;
+    /**
+     * Whether the writer fails, as if the database was not reachable
+     */
+    private final AtomicBoolean failing = new AtomicBoolean();
+    /**
+     * The changes the writer wrote
+     */
+    private final List<MembershipWriteQueue.Write> written = new ArrayList<>();
+    /**
+     * The queue
+     */
+    private MembershipWriteQueue queue;
+
+    /**
+     * Creates a new empty queue which is only flushed when it is full or explicitly
+     */
+    @BeforeEach
+    void createQueue() {
+        failing.set(false);
+        written.clear();
+        queue = new MembershipWriteQueue(writes -> {
+            if(failing.get())
+                throw new SQLException("The database is not reachable!");
+            synchronized (written) {
+                written.addAll(writes);
+            }
+        }, (uuid, groupId) -> uuid.startsWith("member"), CAPACITY, CAPACITY + 1, 3600000);
+    }
+
+    /**
+     * Tests that a change which does not fit into a full queue is rejected and not written later
+     */
+    @Test
+    @DisplayName("Full queue rejects changes while the database is not reachable")
+    void testFullQueue() {
+        failing.set(true);
+        assertDoesNotThrow(() -> {
+            queue.add("uuid1", 1, null);
+            queue.add("uuid2", 1, null);
+        });
+        assertThrows(SQLException.class, () -> queue.add("uuid3", 1, null));
+        assertThrows(SQLException.class, () -> queue.remove("member4", 1));
+        assertEquals(queue.size(), CAPACITY);
+        assertFalse(queue.hasPendingWrites("uuid3"));
+        assertFalse(queue.hasPendingWrites("member4"));
+        // replacing a pending change needs no room
+        assertDoesNotThrow(() -> queue.remove("uuid1", 1));
+        assertEquals(queue.size(), CAPACITY);
+
+        failing.set(false);
+        assertDoesNotThrow(() -> queue.flush());
+        assertEquals(queue.size(), 0);
+        assertEquals(written.size(), 2);
+        assertFalse(written.get(0).add());
+        assertTrue(written.stream().noneMatch(write -> write.membership().uuid().equals("uuid3")));
+    }
+
+    /**
+     * Tests that a full queue is written by the thread adding to it before its change is queued
+     */
+    @Test
+    @DisplayName("Full queue is flushed by the producer")
+    void testFlushByProducer() {
+        assertDoesNotThrow(() -> {
+            queue.add("uuid1", 1, null);
+            queue.add("uuid2", 1, null);
+            queue.add("uuid3", 1, null);
+        });
+        assertEquals(written.size(), 2);
+        assertEquals(queue.size(), 1);
+        assertTrue(queue.hasPendingWrites("uuid3"));
+    }
+
+    /**
+     * Tests that adding an existing and removing a missing membership is rejected, counting stored and pending changes
+     */
+    @Test
+    @DisplayName("Existing and missing memberships")
+    void testMembershipChecks() {
+        assertThrows(IllegalArgumentException.class, () -> queue.add("member1", 1, null));
+        assertThrows(IllegalArgumentException.class, () -> queue.remove("uuid1", 1));
+        assertEquals(queue.size(), 0);
+        assertDoesNotThrow(() -> {
+            queue.add("uuid1", 1, null);
+            queue.remove("member1", 1);
+        });
+        assertThrows(IllegalArgumentException.class, () -> queue.add("uuid1", 1, null));
+        assertThrows(IllegalArgumentException.class, () -> queue.remove("member1", 1));
+        assertDoesNotThrow(() -> {
+            queue.remove("uuid1", 1);
+            queue.add("member1", 1, null);
+        });
+        assertEquals(queue.size(), 2);
+    }
+
+    /**
+     * Stops the queue
+     */
+    @AfterEach
+    void closeQueue() {
+        failing.set(false);
+        queue.close();
+    }
+}
@@ -0,0 +1,110 @@
+import com.schnatz.groupplugin.MessageTemplate;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is used to test class {@link MessageTemplate}
+ * @author Henry Schnatz
+ */
+public class TestMessageTemplate {
+    /**
+     * Tests a message with placeholders between literal text
+     */
+    @Test
+    @DisplayName("Placeholders")
+    void testPlaceholders() {
+        MessageTemplate template = MessageTemplate.compile("Key", "Group %name% has level %level%!", "name", "level");
+        assertEquals("Group Admin has level 5!", template.render("Admin", 5));
+        assertEquals("Group Mod has level 3!", template.render("Mod", 3));
+        assertEquals("%name%", MessageTemplate.compile("Key", "%name%", "name").render("%name%"));
+        assertEquals("", MessageTemplate.compile("Key", "").render());
+    }
+
+    /**
+     * Tests that a '%' which does not enclose a placeholder stays a literal
+     */
+    @Test
+    @DisplayName("Literal '%'")
+    void testLiteralPercent() {
+        assertEquals("100% sure", MessageTemplate.compile("Key", "100% sure").render());
+        assertEquals("%% and % %", MessageTemplate.compile("Key", "%% and % %").render());
+        assertEquals("%Name% and %na me%", MessageTemplate.compile("Key", "%Name% and %na me%", "name").render("Admin"));
+        assertEquals("50%Admin", MessageTemplate.compile("Key", "50%%name%", "name").render("Admin"));
+    }
+
+    /**
+     * Tests a '%' at the end of the message
+     */
+    @Test
+    @DisplayName("Trailing '%'")
+    void testTrailingPercent() {
+        assertEquals("Done %", MessageTemplate.compile("Key", "Done %").render());
+        assertEquals("Admin%", MessageTemplate.compile("Key", "%name%%", "name").render("Admin"));
+        assertEquals("Admin %name", MessageTemplate.compile("Key", "%name% %name", "name").render("Admin"));
+    }
+
+    /**
+     * Tests a placeholder used more than once and placeholders that are not used
+     */
+    @Test
+    @DisplayName("Repeated and unused placeholders")
+    void testRepeatedAndUnused() {
+        MessageTemplate repeated = MessageTemplate.compile("Key", "%name%, %name% and %name%", "name");
+        assertEquals("Admin, Admin and Admin", repeated.render("Admin"));
+        MessageTemplate unused = MessageTemplate.compile("Key", "Hello %prefix%!", "name", "prefix", "color");
+        assertEquals("Hello [A]!", unused.render("Admin", "[A]", "6"));
+        MessageTemplate reordered = MessageTemplate.compile("Key", "%b%%a%", "a", "b");
+        assertEquals("21", reordered.render(1, 2));
+    }
+
+    /**
+     * Tests that an unknown placeholder is kept as literal text instead of failing
+     */
+    @Test
+    @DisplayName("Unknown placeholder")
+    void testUnknownPlaceholder() {
+        MessageTemplate template = assertDoesNotThrow(() -> MessageTemplate.compile("Key", "%name% has %unknown% coins%", "name"));
+        assertEquals("Admin has %unknown% coins%", template.render("Admin"));
+    }
+
+    /**
+     * Tests that rendering with the wrong number of arguments is rejected
+     */
+    @Test
+    @DisplayName("Argument count mismatch")
+    void testArgumentCount() {
+        MessageTemplate template = MessageTemplate.compile("Key", "%name% %prefix%", "name", "prefix");
+        assertThrows(IllegalArgumentException.class, () -> template.render("Admin"));
+        assertThrows(IllegalArgumentException.class, () -> template.render("Admin", "[A]", "6"));
+        assertThrows(IllegalArgumentException.class, () -> MessageTemplate.compile("Key", "Hello").render("Admin"));
+        assertThrows(IllegalArgumentException.class, () -> MessageTemplate.compile("Key", "Hello %name%", "name", "prefix").render("Admin"));
+    }
+
+    /**
+     * Tests that mapLiterals only changes the literal segments, not the arguments, and leaves the original template unchanged
+     */
+    @Test
+    @DisplayName("mapLiterals escaping")
+    void testMapLiterals() {
+        MessageTemplate template = MessageTemplate.compile("Key", "100% %name%: %message%", "name", "message");
+        MessageTemplate escaped = template.mapLiterals(literal -> literal.replace("%", "%%"));
+        assertEquals("100%% Admin: 50% off", escaped.render("Admin", "50% off"));
+        assertEquals("100% Admin: 50% off", template.render("Admin", "50% off"));
+        MessageTemplate unknown = MessageTemplate.compile("Key", "%unknown% %name%", "name").mapLiterals(literal -> literal.replace("%", "%%"));
+        assertEquals("%%unknown%% Admin", unknown.render("Admin"));
+    }
+
+    /**
+     * Tests the typed arguments and rendering into a given builder
+     */
+    @Test
+    @DisplayName("Typed arguments")
+    void testTypedArguments() {
+        MessageTemplate template = MessageTemplate.compile("Key", "%a%|%b%|%c%|%d%", "a", "b", "c", "d");
+        assertEquals("7|8000000000|x|null", template.render(7, 8000000000L, 'x', null));
+        StringBuilder builder = new StringBuilder("> ");
+        assertSame(builder, template.renderTo(builder, 1, 2L, 'y', 2.5));
+        assertEquals("> 1|2|y|2.5", builder.toString());
+    }
+}
@@ -0,0 +1,192 @@
+import com.schnatz.groupplugin.TimingWheel;
+import org.junit.jupiter.api.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is used to test class {@link TimingWheel}
+ * The wheels read the time from a manual clock, so every key fires at exactly the tick it is due at.
+ * @author Henry Schnatz
+ */
+public class TestTimingWheel {
+    /**
+     * The time in milliseconds one tick takes (the wheels advance every millisecond, but only up to the manual clock)
+     */
+    private static final long TICK = 1;
+    /**
+     * The number of ticks one slot of level 1 spans
+     */
+    private static final long LEVEL_1 = 64;
+    /**
+     * The number of ticks one slot of level 4 spans
+     */
+    private static final long LEVEL_4 = 64L * 64 * 64 * 64;
+    /**
+     * The key the handler throws an exception for
+     */
+    private static final String FAILING_KEY = "failing";
+    /**
+     * The manual clock the wheel reads the time from
+     */
+    private final AtomicLong clock = new AtomicLong();
+    /**
+     * The batches the wheel handed to its handler
+     */
+    private final BlockingQueue<List<String>> batches = new LinkedBlockingQueue<>();
+    /**
+     * The number of the last barrier key scheduled by {@link TestTimingWheel#advanceTo(long)}
+     */
+    private int barriers;
+    /**
+     * The wheel
+     */
+    private TimingWheel<String> wheel;
+
+    /**
+     * Starts a new wheel at time 0
+     */
+    @BeforeEach
+    void startWheel() {
+        clock.set(0);
+        batches.clear();
+        wheel = new TimingWheel<>(TICK, batch -> {
+            batches.add(List.copyOf(batch));
+            if(batch.contains(FAILING_KEY))
+                throw new IllegalStateException("Handler failed!");
+        }, "TestTimingWheel", clock::get);
+    }
+
+    /**
+     * Tests that a key of the lowest level fires at its deadline and not a tick earlier
+     */
+    @Test
+    @DisplayName("Level 0 key fires at its deadline")
+    void testLevel0() {
+        wheel.schedule("key", 10);
+        assertTrue(wheel.isScheduled("key"));
+        assertEquals(1, wheel.size());
+        assertFalse(advanceTo(9).contains("key"));
+        assertTrue(wheel.isScheduled("key"));
+        assertTrue(advanceTo(10).contains("key"));
+        assertFalse(wheel.isScheduled("key"));
+        assertEquals(0, wheel.size());
+    }
+
+    /**
+     * Tests that a key of level 2 is cascaded down through level 1 and 0 and fires at its deadline
+     */
+    @Test
+    @DisplayName("Multi level cascade")
+    void testCascade() {
+        long deadline = LEVEL_1 * LEVEL_1 + LEVEL_1 + 5;
+        wheel.schedule("key", deadline);
+        assertFalse(advanceTo(LEVEL_1 * LEVEL_1).contains("key"));
+        assertFalse(advanceTo(LEVEL_1 * LEVEL_1 + LEVEL_1).contains("key"));
+        assertFalse(advanceTo(deadline - 1).contains("key"));
+        assertTrue(advanceTo(deadline).contains("key"));
+        assertEquals(0, wheel.size());
+    }
+
+    /**
+     * Tests a deadline on the highest level and a deadline beyond the wheel's span
+     */
+    @Test
+    @DisplayName("Far future deadline")
+    void testFarFuture() {
+        long deadline = 2 * LEVEL_4 + 3;
+        wheel.schedule("key", deadline);
+        wheel.schedule("beyond", Long.MAX_VALUE / 2);
+        assertFalse(advanceTo(deadline - 1).contains("key"));
+        Set<String> fired = advanceTo(deadline);
+        assertTrue(fired.contains("key"));
+        assertFalse(fired.contains("beyond"));
+        assertTrue(wheel.isScheduled("beyond"));
+        assertTrue(wheel.cancel("beyond"));
+        assertEquals(0, wheel.size());
+    }
+
+    /**
+     * Tests that scheduling a key again replaces its earlier deadline, later and earlier
+     */
+    @Test
+    @DisplayName("Reschedule")
+    void testReschedule() {
+        wheel.schedule("later", 50);
+        wheel.schedule("later", 200);
+        wheel.schedule("earlier", 1000);
+        wheel.schedule("earlier", 60);
+        assertEquals(2, wheel.size());
+        Set<String> fired = advanceTo(60);
+        assertFalse(fired.contains("later"));
+        assertTrue(fired.contains("earlier"));
+        assertFalse(advanceTo(199).contains("later"));
+        assertTrue(advanceTo(200).contains("later"));
+        assertFalse(advanceTo(1000).contains("earlier"));
+        assertEquals(0, wheel.size());
+    }
+
+    /**
+     * Tests that a cancelled key does not fire
+     */
+    @Test
+    @DisplayName("Cancel")
+    void testCancel() {
+        wheel.schedule("key", 300);
+        wheel.schedule("other", 300);
+        assertTrue(wheel.cancel("key"));
+        assertFalse(wheel.cancel("key"));
+        assertFalse(wheel.isScheduled("key"));
+        Set<String> fired = advanceTo(300);
+        assertFalse(fired.contains("key"));
+        assertTrue(fired.contains("other"));
+    }
+
+    /**
+     * Tests that an exception thrown by the handler does not stop the wheel
+     */
+    @Test
+    @DisplayName("Handler exception does not stop the wheel")
+    void testHandlerException() {
+        wheel.schedule(FAILING_KEY, 400);
+        wheel.schedule("key", 500);
+        assertTrue(advanceTo(400).contains(FAILING_KEY));
+        assertTrue(advanceTo(500).contains("key"));
+        assertEquals(0, wheel.size());
+    }
+
+    /**
+     * Stops the wheel
+     */
+    @AfterEach
+    void stopWheel() {
+        wheel.close();
+    }
+
+    /**
+     * Moves the clock to the given time and waits until the wheel processed every tick up to it.
+     * A barrier key due at the given time marks the last batch of those ticks.
+     * @param time the time in milliseconds
+     * @return the keys fired up to the given time since the last call, without the barrier key
+     */
+    private Set<String> advanceTo(long time) {
+        String barrier = "barrier" + ++barriers;
+        wheel.schedule(barrier, time);
+        clock.set(time);
+        Set<String> fired = new HashSet<>();
+        while(!fired.contains(barrier)) {
+            List<String> batch = assertDoesNotThrow(() -> batches.poll(10, TimeUnit.SECONDS));
+            assertNotNull(batch, "The wheel did not reach " + time + "!");
+            fired.addAll(batch);
+        }
+        fired.remove(barrier);
+        return fired;
+    }
+}